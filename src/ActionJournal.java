@@ -0,0 +1,255 @@
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only binary journal of everything that happens in a game:
+ * email arrivals with their spam filter decision, player actions, upgrade
+ * purchases, level-ups, pauses and resumes, and the end of the game.
+ * JournalReplay plays a journal back.
+ *
+ * Records are fixed-width and written straight into a memory-mapped file,
+ * so appending costs a lock and a few stores. A background thread forces
+ * whatever was appended since its last pass to disk every few milliseconds
+ * (group commit), so callers never wait on the disk themselves.
+ */
+public class ActionJournal implements Closeable {
+    static final int MAGIC = 0x45444A31; // "EDJ1"
+    static final int VERSION = 2;
+
+    // File header, in bytes
+    static final int HEADER_MAGIC = 0;        // int
+    static final int HEADER_VERSION = 4;      // int
+    static final int HEADER_START_NANOS = 8;  // long, game clock reading when the journal began
+    static final int HEADER_START_SECOND = 16; // long, wall time of that reading (UTC epoch second)
+    static final int HEADER_START_NANO = 24;  // int, and its nanosecond
+    static final int HEADER_SIZE = 32;
+
+    // Record layout, in bytes
+    static final int KIND = 0;          // byte, written last; 0 marks the end of the journal
+    static final int CODE = 1;          // byte, email type, action or upgrade type ordinal
+    static final int SENDER_SLOT = 2;   // byte
+    static final int SUBJECT_SLOT = 3;  // byte
+    static final int FLAGS = 4;         // byte
+    static final int VALUE = 8;         // int, email size or new level
+    static final int VALUE2 = 12;       // int, stored attachment bytes or score
+    static final int NANOS = 16;        // long, game clock reading
+    static final int EMAIL_ID = 24;     // long
+    static final int RECORD_SIZE = 32;
+
+    // Record kinds
+    static final byte ARRIVAL = 1;
+    static final byte ACTION = 2;
+    static final byte UPGRADE = 3;
+    static final byte LEVEL_UP = 4;
+    static final byte GAME_OVER = 5;
+    static final byte PAUSE = 6;
+    static final byte RESUME = 7;
+
+    // Record flags
+    static final byte URGENT_FLAG = 1;
+    static final byte FILTERED_FLAG = 2;   // Arrival was caught by the spam filter
+    static final byte FULL_TEXT_FLAG = 4;  // Arrival had its own text, which is not journaled
+    static final byte SUCCESS_FLAG = 8;    // Upgrade purchase went through
+
+    // Whole records per segment, so a record never spans two segments
+    static final int SEGMENT_SIZE = 32 * 1024 * 1024;
+
+    private static final long FLUSH_INTERVAL_MILLIS = 10;
+
+    private final FileChannel channel;
+    private final GameClock clock;
+    private final ScheduledExecutorService flusher;
+    private MappedByteBuffer[] segments;
+    private long appendPosition;
+    private long forcedPosition;
+    private boolean closed;
+
+    /**
+     * Constructor for a new journal in the given file, which is truncated.
+     * Record times are readings of the given clock.
+     */
+    public ActionJournal(Path path, GameClock clock) throws IOException {
+        this.clock = clock;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segments = new MappedByteBuffer[0];
+
+        long startNanos = clock.nanoTime();
+        LocalDateTime startTime = clock.toWallTime(startNanos);
+        MappedByteBuffer first = segmentFor(0);
+        first.putInt(HEADER_MAGIC, MAGIC);
+        first.putInt(HEADER_VERSION, VERSION);
+        first.putLong(HEADER_START_NANOS, startNanos);
+        first.putLong(HEADER_START_SECOND, startTime.toEpochSecond(ZoneOffset.UTC));
+        first.putInt(HEADER_START_NANO, startTime.getNano());
+        appendPosition = HEADER_SIZE;
+
+        flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS,
+                                       TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Journal an email arrival and whether the spam filter caught it
+     */
+    public void recordArrival(Email email, boolean filtered) {
+        byte flags = 0;
+        if (email.isUrgent()) {
+            flags |= URGENT_FLAG;
+        }
+        if (filtered) {
+            flags |= FILTERED_FLAG;
+        }
+        if (email.getSenderSlot() == Email.NO_TEMPLATE) {
+            flags |= FULL_TEXT_FLAG;
+        }
+        append(ARRIVAL, (byte) email.getType().ordinal(), (byte) email.getSenderSlot(),
+               (byte) email.getSubjectSlot(), flags, email.getSize(), email.getStoredAttachmentSize(),
+               email.getReceivedNanos(), email.getId());
+    }
+
+    /**
+     * Journal a player action on an email in the inbox
+     */
+    public void recordAction(Email email, EmailAction action) {
+        append(ACTION, (byte) action.ordinal(), (byte) 0, (byte) 0, (byte) 0, 0, 0, clock.nanoTime(), email.getId());
+    }
+
+    /**
+     * Journal an upgrade purchase attempt
+     */
+    public void recordUpgrade(UpgradeType type, boolean success) {
+        append(UPGRADE, (byte) type.ordinal(), (byte) 0, (byte) 0, success ? SUCCESS_FLAG : 0, 0, 0,
+               clock.nanoTime(), 0);
+    }
+
+    /**
+     * Journal a level-up, with the score at that point so a replay can
+     * check it is still in step
+     */
+    public void recordLevelUp(int level, int score) {
+        append(LEVEL_UP, (byte) 0, (byte) 0, (byte) 0, (byte) 0, level, score, clock.nanoTime(), 0);
+    }
+
+    /**
+     * Journal the game being paused at the given clock reading.
+     * Deadlines run on game time, which stands still while paused, so a
+     * replay has to pause at the same reading.
+     */
+    public void recordPause(long nanos) {
+        append(PAUSE, (byte) 0, (byte) 0, (byte) 0, (byte) 0, 0, 0, nanos, 0);
+    }
+
+    /**
+     * Journal the game being resumed at the given clock reading
+     */
+    public void recordResume(long nanos) {
+        append(RESUME, (byte) 0, (byte) 0, (byte) 0, (byte) 0, 0, 0, nanos, 0);
+    }
+
+    /**
+     * Journal the end of the game, so a replay knows how long it ran
+     */
+    public void recordGameOver(int score) {
+        append(GAME_OVER, (byte) 0, (byte) 0, (byte) 0, (byte) 0, 0, score, clock.nanoTime(), 0);
+    }
+
+    /**
+     * Get the number of records appended so far
+     */
+    public synchronized long getRecordCount() {
+        return (appendPosition - HEADER_SIZE) / RECORD_SIZE;
+    }
+
+    /**
+     * Force everything appended so far to disk.
+     * Runs on the flush thread every few milliseconds; call it directly to
+     * wait for the records written so far to be durable.
+     */
+    public void flush() {
+        MappedByteBuffer[] toForce;
+        long from;
+        long to;
+        synchronized (this) {
+            if (closed || appendPosition == forcedPosition) {
+                return;
+            }
+            toForce = segments;
+            from = forcedPosition;
+            to = appendPosition;
+            forcedPosition = to;
+        }
+        // Force outside the lock so appends carry on meanwhile
+        for (int index = (int) (from / SEGMENT_SIZE); index <= (to - 1) / SEGMENT_SIZE; index++) {
+            long segmentStart = (long) index * SEGMENT_SIZE;
+            int start = (int) (Math.max(from, segmentStart) - segmentStart);
+            int end = (int) (Math.min(to, segmentStart + SEGMENT_SIZE) - segmentStart);
+            toForce[index].force(start, end - start);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        flusher.shutdownNow();
+        flush();
+        synchronized (this) {
+            closed = true;
+            segments = new MappedByteBuffer[0];
+            channel.close();
+        }
+    }
+
+    private synchronized void append(byte kind, byte code, byte senderSlot, byte subjectSlot, byte flags,
+                                     int value, int value2, long nanos, long emailId) {
+        if (closed) {
+            return;
+        }
+        MappedByteBuffer segment = segmentFor(appendPosition);
+        int base = (int) (appendPosition % SEGMENT_SIZE);
+        segment.put(base + CODE, code);
+        segment.put(base + SENDER_SLOT, senderSlot);
+        segment.put(base + SUBJECT_SLOT, subjectSlot);
+        segment.put(base + FLAGS, flags);
+        segment.putInt(base + VALUE, value);
+        segment.putInt(base + VALUE2, value2);
+        segment.putLong(base + NANOS, nanos);
+        segment.putLong(base + EMAIL_ID, emailId);
+        segment.put(base + KIND, kind); // Last, so a reader never sees half a record
+        appendPosition += RECORD_SIZE;
+    }
+
+    private MappedByteBuffer segmentFor(long offset) {
+        int index = (int) (offset / SEGMENT_SIZE);
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        }
+        if (segments[index] == null) {
+            try {
+                segments[index] = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * SEGMENT_SIZE,
+                                              SEGMENT_SIZE);
+                segments[index].order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segments[index];
+    }
+}
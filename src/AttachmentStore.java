@@ -0,0 +1,296 @@
+package src;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Store for attachment payloads, kept in a memory-mapped file outside the
+ * Java heap. Payloads are deflated on the way in at the level set by the
+ * Attachment Compressor upgrade, and emails only hold a small Attachment
+ * handle pointing at their bytes.
+ *
+ * Each payload gets a block rounded up to a power of two. A released block
+ * goes on the free list for its size class and the next payload of that
+ * class reuses it, so emails leaving the inbox in any order keep the file
+ * at about twice the largest number of live bytes instead of growing all
+ * session. The file is deleted on close.
+ */
+public class AttachmentStore implements Closeable {
+    // File is mapped in fixed segments; a payload never spans two segments
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    // Smallest block, and the number of power-of-two size classes up to a segment
+    private static final int MIN_BLOCK_SHIFT = 12;
+    private static final int SIZE_CLASSES = Integer.numberOfTrailingZeros(SEGMENT_SIZE) - MIN_BLOCK_SHIFT + 1;
+
+    /**
+     * Handle to one stored payload
+     */
+    public static final class Attachment {
+        private final long offset;
+        private final int storedLength;
+        private final int rawLength;
+        private final boolean compressed;
+        private boolean released; // Guarded by the store
+
+        private Attachment(long offset, int storedLength, int rawLength, boolean compressed) {
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.rawLength = rawLength;
+            this.compressed = compressed;
+        }
+
+        /**
+         * Get the number of bytes the payload takes up in the store
+         */
+        public int getStoredLength() {
+            return storedLength;
+        }
+
+        /**
+         * Get the payload size before compression
+         */
+        public int getRawLength() {
+            return rawLength;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+    }
+
+    private final Path path;
+    private final FileChannel channel;
+    private final boolean deleteOnClose;
+    private MappedByteBuffer[] segments;
+    private long appendPosition;
+    private long liveBytes;
+
+    // Offsets of released blocks, a stack per size class
+    private final long[][] freeBlocks;
+    private final int[] freeCounts;
+
+    // Reused for every payload; the store is synchronized
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private byte[] buffer;
+
+    /**
+     * Constructor for a store backed by the given file, which is truncated
+     */
+    public AttachmentStore(Path path) throws IOException {
+        this(path, false);
+    }
+
+    private AttachmentStore(Path path, boolean deleteOnClose) throws IOException {
+        this.path = path;
+        this.deleteOnClose = deleteOnClose;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segments = new MappedByteBuffer[0];
+        this.freeBlocks = new long[SIZE_CLASSES][];
+        this.freeCounts = new int[SIZE_CLASSES];
+        this.deflater = new Deflater();
+        this.inflater = new Inflater();
+        this.buffer = new byte[64 * 1024];
+    }
+
+    /**
+     * Create a store in a temporary file that is deleted when the store is closed
+     */
+    public static AttachmentStore createTemporary() {
+        try {
+            Path file = Files.createTempFile("email-defender-attachments", ".bin");
+            file.toFile().deleteOnExit();
+            return new AttachmentStore(file, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Store a payload, deflating it at the given level (Deflater.NO_COMPRESSION
+     * to store it as is). Returns the handle for reading it back.
+     */
+    public synchronized Attachment store(byte[] payload, int compressionLevel) {
+        byte[] stored = payload;
+        int storedLength = payload.length;
+        boolean compressed = compressionLevel != Deflater.NO_COMPRESSION;
+        if (compressed) {
+            deflater.reset();
+            deflater.setLevel(compressionLevel);
+            deflater.setInput(payload);
+            deflater.finish();
+            storedLength = 0;
+            while (!deflater.finished()) {
+                if (storedLength == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                storedLength += deflater.deflate(buffer, storedLength, buffer.length - storedLength);
+            }
+            stored = buffer;
+        }
+        if (storedLength > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Attachment too large: " + storedLength + " bytes");
+        }
+
+        long offset = allocate(storedLength);
+        segmentFor(offset).put((int) (offset % SEGMENT_SIZE), stored, 0, storedLength);
+        liveBytes += storedLength;
+        return new Attachment(offset, storedLength, payload.length, compressed);
+    }
+
+    /**
+     * Store a payload exactly as it was stored before, such as one read back
+     * from a GameSnapshot; stored holds its remaining bytes
+     */
+    public synchronized Attachment restore(ByteBuffer stored, int rawLength, boolean compressed) {
+        int storedLength = stored.remaining();
+        if (storedLength > SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Attachment too large: " + storedLength + " bytes");
+        }
+
+        long offset = allocate(storedLength);
+        segmentFor(offset).put((int) (offset % SEGMENT_SIZE), stored, stored.position(), storedLength);
+        liveBytes += storedLength;
+        return new Attachment(offset, storedLength, rawLength, compressed);
+    }
+
+    /**
+     * Copy a payload's stored bytes, compressed or not, into a buffer
+     */
+    public synchronized void readStored(Attachment attachment, ByteBuffer target) {
+        target.put(target.position(), segmentFor(attachment.offset), (int) (attachment.offset % SEGMENT_SIZE),
+                   attachment.storedLength);
+        target.position(target.position() + attachment.storedLength);
+    }
+
+    /**
+     * Read a payload back, inflating it if it was compressed
+     */
+    public synchronized byte[] read(Attachment attachment) {
+        byte[] stored = new byte[attachment.storedLength];
+        segmentFor(attachment.offset).get((int) (attachment.offset % SEGMENT_SIZE), stored);
+        if (!attachment.compressed) {
+            return stored;
+        }
+        byte[] payload = new byte[attachment.rawLength];
+        inflater.reset();
+        inflater.setInput(stored);
+        try {
+            int length = 0;
+            while (length < payload.length && !inflater.finished()) {
+                length += inflater.inflate(payload, length, payload.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt attachment at offset " + attachment.offset, e);
+        }
+        return payload;
+    }
+
+    /**
+     * Note that a payload is no longer referenced by any inbox email, so its
+     * block can be reused. Releasing a payload twice does nothing.
+     */
+    public synchronized void release(Attachment attachment) {
+        if (attachment.released) {
+            return; // Its block may already hold another payload
+        }
+        attachment.released = true;
+        liveBytes -= attachment.storedLength;
+
+        int sizeClass = sizeClass(attachment.storedLength);
+        long[] blocks = freeBlocks[sizeClass];
+        if (blocks == null) {
+            blocks = freeBlocks[sizeClass] = new long[16];
+        } else if (freeCounts[sizeClass] == blocks.length) {
+            blocks = freeBlocks[sizeClass] = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        blocks[freeCounts[sizeClass]++] = attachment.offset;
+    }
+
+    /**
+     * Get the bytes of payloads still in use
+     */
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /**
+     * Get the bytes of the file in use so far, including released blocks
+     * waiting to be reused
+     */
+    public synchronized long getFileBytes() {
+        return appendPosition;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        segments = new MappedByteBuffer[0];
+        deflater.end();
+        inflater.end();
+        channel.close();
+        if (deleteOnClose) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Find a block for a payload: a released block of its size class if
+     * there is one, otherwise a new one at the end of the file
+     */
+    private long allocate(int storedLength) {
+        int sizeClass = sizeClass(storedLength);
+        if (freeCounts[sizeClass] > 0) {
+            return freeBlocks[sizeClass][--freeCounts[sizeClass]];
+        }
+
+        // Start a new segment if the block doesn't fit in the current one
+        int blockSize = 1 << (sizeClass + MIN_BLOCK_SHIFT);
+        long segmentEnd = (appendPosition / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        if (appendPosition + blockSize > segmentEnd) {
+            appendPosition = segmentEnd;
+        }
+        long offset = appendPosition;
+        appendPosition += blockSize;
+        return offset;
+    }
+
+    /**
+     * Get the size class of a payload: its length rounded up to a power of
+     * two, counted from the smallest block
+     */
+    private static int sizeClass(int storedLength) {
+        if (storedLength <= 1 << MIN_BLOCK_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(storedLength - 1) - MIN_BLOCK_SHIFT;
+    }
+
+    private MappedByteBuffer segmentFor(long offset) {
+        int index = (int) (offset / SEGMENT_SIZE);
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, index + 1);
+        }
+        if (segments[index] == null) {
+            try {
+                segments[index] = channel.map(FileChannel.MapMode.READ_WRITE, (long) index * SEGMENT_SIZE,
+                                              SEGMENT_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segments[index];
+    }
+}
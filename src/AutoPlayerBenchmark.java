@@ -0,0 +1,331 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays thousands of complete headless games in parallel to tune the game
+ * balance. Each configuration pairs a PlayerPolicy with a GameBalance;
+ * every game of every configuration is an independent HeadlessSimulation,
+ * so the games are spread over a ForkJoinPool with one worker per core.
+ *
+ * Game i of every configuration uses the same seed, so two configurations
+ * are compared on the same email streams and differences come from the
+ * parameters rather than luck. Results only depend on the seed, never on
+ * how the games were scheduled.
+ */
+public class AutoPlayerBenchmark {
+    private static final long HANDLING_NANOS = TimeUnit.SECONDS.toNanos(3);
+    private static final String[] POLICIES = {"perfect", "noisy", "greedy"};
+
+    // Values tried by the sweep for each balance parameter
+    private static final int[] SWEEP_MAX_INCORRECT_DELETES = {3, 5, 8};
+    private static final int[] SWEEP_ARRIVAL_BASE_SECONDS = {8, 10, 12};
+    private static final double[] SWEEP_UPGRADE_COST_MULTIPLIERS = {0.5, 1.0, 1.5};
+
+    /**
+     * A policy and balance parameters to play a batch of games with
+     */
+    public static final class Configuration {
+        private final String policyName;
+        private final GameBalance balance;
+
+        public Configuration(String policyName, GameBalance balance) {
+            this.policyName = policyName;
+            this.balance = balance;
+        }
+
+        public String getPolicyName() {
+            return policyName;
+        }
+
+        public GameBalance getBalance() {
+            return balance;
+        }
+    }
+
+    /**
+     * Statistics over all games of one configuration
+     */
+    public static final class Summary {
+        private final Configuration configuration;
+        private final int games;
+        private final int[] levels; // Sorted
+        private final int[] scores; // Sorted
+        private final Map<String, Integer> endings;
+        private final double utilization;
+        private final double averageWaitSeconds;
+        private final double averagePeakInboxFill;
+        private final double filteredFraction;
+        private final double averageIncorrectDeletes;
+        private final double averageLegitimateFiltered;
+        private final double averageMissedCritical;
+        private final double averageUpgradesBought;
+
+        Summary(Configuration configuration, HeadlessSimulation.Result[] results, int from, int to) {
+            this.configuration = configuration;
+            games = to - from;
+            levels = new int[games];
+            scores = new int[games];
+            endings = new TreeMap<>();
+            long busyNanos = 0;
+            long simulatedNanos = 0;
+            long waitNanos = 0;
+            long handled = 0;
+            long filtered = 0;
+            long generated = 0;
+            double peakFill = 0;
+            long incorrectDeletes = 0;
+            long legitimateFiltered = 0;
+            long missedCritical = 0;
+            long upgradesBought = 0;
+            for (int i = from; i < to; i++) {
+                HeadlessSimulation.Result result = results[i];
+                levels[i - from] = result.getLevel();
+                scores[i - from] = result.getScore();
+                endings.merge(getEnding(result, configuration.balance), 1, Integer::sum);
+                busyNanos += result.getBusyNanos();
+                simulatedNanos += result.getSimulatedNanos();
+                waitNanos += result.getTotalWaitNanos();
+                handled += result.getEmailsHandled();
+                filtered += result.getEmailsFiltered();
+                generated += result.getEmailsGenerated();
+                peakFill += result.getPeakInboxFill();
+                incorrectDeletes += result.getIncorrectDeletes();
+                legitimateFiltered += result.getLegitimateFiltered();
+                missedCritical += result.getMissedCritical();
+                upgradesBought += result.getUpgradesBought();
+            }
+            Arrays.sort(levels);
+            Arrays.sort(scores);
+            utilization = (double) busyNanos / Math.max(1, simulatedNanos);
+            averageWaitSeconds = waitNanos / 1e9 / Math.max(1, handled);
+            averagePeakInboxFill = peakFill / games;
+            filteredFraction = (double) filtered / Math.max(1, generated);
+            averageIncorrectDeletes = (double) incorrectDeletes / games;
+            averageLegitimateFiltered = (double) legitimateFiltered / games;
+            averageMissedCritical = (double) missedCritical / games;
+            averageUpgradesBought = (double) upgradesBought / games;
+        }
+
+        public Configuration getConfiguration() {
+            return configuration;
+        }
+
+        /**
+         * Get the level reached at a percentile from 0 to 100
+         */
+        public int getLevelPercentile(int percentile) {
+            return percentile(levels, percentile);
+        }
+
+        /**
+         * Get the score reached at a percentile from 0 to 100
+         */
+        public int getScorePercentile(int percentile) {
+            return percentile(scores, percentile);
+        }
+
+        public double getAverageLevel() {
+            return Arrays.stream(levels).average().orElse(0);
+        }
+
+        public double getAverageScore() {
+            return Arrays.stream(scores).average().orElse(0);
+        }
+
+        /**
+         * Get the fraction of games that ended a given way: "survived",
+         * "inbox full", "mistakes" or "missed critical"
+         */
+        public double getEndingFraction(String ending) {
+            return (double) endings.getOrDefault(ending, 0) / games;
+        }
+
+        /**
+         * Print the full report for this configuration
+         */
+        void print() {
+            System.out.printf("%s, %s (%d games)%n", configuration.policyName, configuration.balance, games);
+            System.out.printf("  Level  p10 %d  p50 %d  p90 %d  max %d  mean %.2f%n", getLevelPercentile(10),
+                              getLevelPercentile(50), getLevelPercentile(90), getLevelPercentile(100),
+                              getAverageLevel());
+            System.out.printf("  Score  p10 %d  p50 %d  p90 %d  max %d  mean %.0f%n", getScorePercentile(10),
+                              getScorePercentile(50), getScorePercentile(90), getScorePercentile(100),
+                              getAverageScore());
+            StringBuilder endingText = new StringBuilder("  Ended by");
+            for (Map.Entry<String, Integer> ending : endings.entrySet()) {
+                endingText.append(String.format("  %s %.1f%%", ending.getKey(), 100.0 * ending.getValue() / games));
+            }
+            System.out.println(endingText);
+            System.out.printf("  Player busy %.0f%%, emails waited %.1f s, peak inbox fill %.0f%%, filtered %.1f%%%n",
+                              100 * utilization, averageWaitSeconds, 100 * averagePeakInboxFill,
+                              100 * filteredFraction);
+            System.out.printf("  Per game: %.2f incorrect deletes, %.2f legitimate filtered, %.2f missed critical, "
+                              + "%.1f upgrades%n", averageIncorrectDeletes, averageLegitimateFiltered,
+                              averageMissedCritical, averageUpgradesBought);
+        }
+    }
+
+    private final List<Configuration> configurations;
+    private final int gamesPerConfiguration;
+    private final long maxSimulatedNanos;
+    private final long[] gameSeeds;
+
+    /**
+     * Constructor for a benchmark that plays gamesPerConfiguration games of
+     * each configuration, each lasting at most maxSimulatedNanos
+     */
+    public AutoPlayerBenchmark(List<Configuration> configurations, int gamesPerConfiguration,
+                               long maxSimulatedNanos, long seed) {
+        this.configurations = configurations;
+        this.gamesPerConfiguration = gamesPerConfiguration;
+        this.maxSimulatedNanos = maxSimulatedNanos;
+        gameSeeds = new long[gamesPerConfiguration];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < gamesPerConfiguration; i++) {
+            gameSeeds[i] = seeds.nextLong();
+        }
+    }
+
+    /**
+     * Play every game on a pool and summarize each configuration
+     */
+    public List<Summary> run(ForkJoinPool pool) {
+        HeadlessSimulation.Result[] results =
+                new HeadlessSimulation.Result[configurations.size() * gamesPerConfiguration];
+        pool.invoke(new PlayGamesTask(results, 0, results.length));
+
+        List<Summary> summaries = new ArrayList<>();
+        for (int i = 0; i < configurations.size(); i++) {
+            int from = i * gamesPerConfiguration;
+            summaries.add(new Summary(configurations.get(i), results, from, from + gamesPerConfiguration));
+        }
+        return summaries;
+    }
+
+    /**
+     * Fork/join task that plays one range of games. Game i belongs to
+     * configuration i / gamesPerConfiguration, so one pool works through
+     * every configuration at once.
+     */
+    private class PlayGamesTask extends RecursiveAction {
+        private final HeadlessSimulation.Result[] results;
+        private final int from;
+        private final int to;
+
+        PlayGamesTask(HeadlessSimulation.Result[] results, int from, int to) {
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                Configuration configuration = configurations.get(from / gamesPerConfiguration);
+                PlayerPolicy policy = PlayerPolicy.named(configuration.policyName, HANDLING_NANOS);
+                results[from] = new HeadlessSimulation(gameSeeds[from % gamesPerConfiguration], policy,
+                                                       maxSimulatedNanos, configuration.balance).run();
+                return;
+            }
+            // A game is long enough work on its own to be worth a task
+            int mid = (from + to) >>> 1;
+            invokeAll(new PlayGamesTask(results, from, mid), new PlayGamesTask(results, mid, to));
+        }
+    }
+
+    /**
+     * Get how a game ended
+     */
+    private static String getEnding(HeadlessSimulation.Result result, GameBalance balance) {
+        if (result.getGameOverMessage() == null) {
+            return "survived";
+        }
+        if (result.getIncorrectDeletes() >= balance.getMaxIncorrectDeletes()) {
+            return "mistakes";
+        }
+        if (result.getMissedCritical() >= balance.getMaxMissedCritical()) {
+            return "missed critical";
+        }
+        return "inbox full";
+    }
+
+    private static int percentile(int[] sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Benchmark the player policies, or sweep the balance parameters.
+     * Usage: AutoPlayerBenchmark [games] [perfect|noisy|greedy|accurate|all] [simulated hours] [seed]
+     *        AutoPlayerBenchmark sweep [games per configuration] [simulated hours] [seed]
+     */
+    public static void main(String[] args) {
+        boolean sweep = args.length > 0 && args[0].equals("sweep");
+        int next = sweep ? 1 : 0;
+        int games = args.length > next ? Integer.parseInt(args[next]) : sweep ? 200 : 2000;
+        String policyName = !sweep && args.length > 1 ? args[1] : "all";
+        next += sweep ? 1 : 2;
+        double hours = args.length > next ? Double.parseDouble(args[next]) : 2;
+        long seed = args.length > next + 1 ? Long.parseLong(args[next + 1]) : 1;
+        long maxSimulatedNanos = (long) (hours * TimeUnit.HOURS.toNanos(1));
+
+        String[] policies = policyName.equals("all") ? POLICIES : new String[] {policyName};
+        List<Configuration> configurations = new ArrayList<>();
+        for (String policy : policies) {
+            if (!sweep) {
+                configurations.add(new Configuration(policy, GameBalance.DEFAULT));
+                continue;
+            }
+            for (int maxIncorrectDeletes : SWEEP_MAX_INCORRECT_DELETES) {
+                for (int arrivalBaseSeconds : SWEEP_ARRIVAL_BASE_SECONDS) {
+                    for (double costMultiplier : SWEEP_UPGRADE_COST_MULTIPLIERS) {
+                        configurations.add(new Configuration(policy, GameBalance.DEFAULT
+                                .withMaxIncorrectDeletes(maxIncorrectDeletes)
+                                .withArrivalDelay(arrivalBaseSeconds, 2)
+                                .withUpgradeCostMultiplier(costMultiplier)));
+                    }
+                }
+            }
+        }
+
+        int threads = Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long wallStart = System.nanoTime();
+        List<Summary> summaries =
+                new AutoPlayerBenchmark(configurations, games, maxSimulatedNanos, seed).run(pool);
+        long wallNanos = System.nanoTime() - wallStart;
+        pool.shutdown();
+
+        if (sweep) {
+            System.out.println("policy   maxDel arrival cost   level p50  mean   score p50  survived  inbox"
+                               + "  mistakes  missed");
+            for (Summary summary : summaries) {
+                GameBalance balance = summary.getConfiguration().getBalance();
+                System.out.printf("%-8s %6d %7s %4.1f %13d %5.2f %11d %8.1f%% %5.1f%% %8.1f%% %6.1f%%%n",
+                                  summary.getConfiguration().getPolicyName(), balance.getMaxIncorrectDeletes(),
+                                  balance.getArrivalDelaySeconds(0, balance.getArrivalJitterRange() / 2) + "s",
+                                  balance.getUpgradeCostMultiplier(), summary.getLevelPercentile(50),
+                                  summary.getAverageLevel(), summary.getScorePercentile(50),
+                                  100 * summary.getEndingFraction("survived"),
+                                  100 * summary.getEndingFraction("inbox full"),
+                                  100 * summary.getEndingFraction("mistakes"),
+                                  100 * summary.getEndingFraction("missed critical"));
+            }
+        } else {
+            for (Summary summary : summaries) {
+                summary.print();
+            }
+        }
+        System.out.printf("%d games on %d threads in %.2f s (%.0f games/s)%n", configurations.size() * games,
+                          threads, wallNanos / 1e9, configurations.size() * games * 1e9 / wallNanos);
+    }
+}
@@ -0,0 +1,294 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inbox store that keeps email fields in primitive column arrays.
+ * Emails added to the store are not retained; an Email view is built from
+ * the columns (and cached) only when one is asked for. Scans such as spam
+ * counts or the oldest urgent email are plain loops over primitive arrays.
+ *
+ * Emails that carry their own text rather than template slots, or an
+ * attachment, can't be stored in columns and are kept as objects alongside.
+ *
+ * Arrival times are kept as game clock readings. Views use the clock of
+ * the most recently added email, which is the email system's clock.
+ */
+public class ColumnarInboxStore implements InboxStore {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NONE = -1;
+    private static final byte FREE = -1;
+    private static final Email.EmailType[] TYPES = Email.EmailType.values();
+
+    // Columns, indexed by slot. A slot is free when its type is FREE.
+    private long[] ids;
+    private byte[] types;
+    private int[] sizes;
+    private int[] units;
+    private boolean[] urgent;
+    private long[] arrivalNanos;
+    private byte[] senderSlots;
+    private byte[] subjectSlots;
+    private int[] generations;
+
+    // Arrival order is kept as a doubly linked list through the slots
+    private int[] next;
+    private int[] prev;
+    private int head;
+    private int tail;
+
+    // Views handed out so far, and emails that don't fit in the columns
+    private Email[] views;
+    private final Map<Integer, Email> fullEmails;
+
+    private int[] freeSlots;
+    private int freeCount;
+    private int slotCount;
+    private int liveCount;
+    private long occupiedUnits;
+    private GameClock clock = GameClock.SYSTEM;
+
+    /**
+     * Constructor for an empty store
+     */
+    public ColumnarInboxStore() {
+        ids = new long[INITIAL_CAPACITY];
+        types = new byte[INITIAL_CAPACITY];
+        sizes = new int[INITIAL_CAPACITY];
+        units = new int[INITIAL_CAPACITY];
+        urgent = new boolean[INITIAL_CAPACITY];
+        arrivalNanos = new long[INITIAL_CAPACITY];
+        senderSlots = new byte[INITIAL_CAPACITY];
+        subjectSlots = new byte[INITIAL_CAPACITY];
+        generations = new int[INITIAL_CAPACITY];
+        next = new int[INITIAL_CAPACITY];
+        prev = new int[INITIAL_CAPACITY];
+        views = new Email[INITIAL_CAPACITY];
+        freeSlots = new int[INITIAL_CAPACITY];
+        fullEmails = new HashMap<>();
+        head = NONE;
+        tail = NONE;
+    }
+
+    @Override
+    public synchronized boolean tryAdd(Email email, int emailUnits, long capacityUnits) {
+        if (occupiedUnits + emailUnits > capacityUnits) {
+            return false;
+        }
+
+        int slot = allocateSlot();
+        ids[slot] = email.getId();
+        types[slot] = (byte) email.getType().ordinal();
+        sizes[slot] = email.getSize();
+        units[slot] = emailUnits;
+        urgent[slot] = email.isUrgent();
+        arrivalNanos[slot] = email.getReceivedNanos();
+        clock = email.getClock();
+        senderSlots[slot] = (byte) email.getSenderSlot();
+        subjectSlots[slot] = (byte) email.getSubjectSlot();
+        if (!email.isCompact()) {
+            fullEmails.put(slot, email);
+        }
+
+        // Link at the tail of the arrival list
+        prev[slot] = tail;
+        next[slot] = NONE;
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            next[tail] = slot;
+        }
+        tail = slot;
+
+        email.inboxHandle = this;
+        email.storeKey = key(slot);
+        occupiedUnits += emailUnits;
+        liveCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Email email) {
+        int slot = findSlot(email);
+        if (slot == NONE) {
+            return false;
+        }
+
+        // Unlink from the arrival list
+        if (prev[slot] == NONE) {
+            head = next[slot];
+        } else {
+            next[prev[slot]] = next[slot];
+        }
+        if (next[slot] == NONE) {
+            tail = prev[slot];
+        } else {
+            prev[next[slot]] = prev[slot];
+        }
+
+        occupiedUnits -= units[slot];
+        liveCount--;
+        types[slot] = FREE;
+        views[slot] = null;
+        fullEmails.remove(slot);
+        generations[slot]++; // Invalidates handles still pointing at this slot
+        email.inboxHandle = null;
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = grow(freeSlots);
+        }
+        freeSlots[freeCount++] = slot;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(Email email) {
+        return findSlot(email) != NONE;
+    }
+
+    @Override
+    public synchronized long getOccupiedUnits() {
+        return occupiedUnits;
+    }
+
+    @Override
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    @Override
+    public synchronized List<Email> snapshot() {
+        List<Email> emails = new ArrayList<>(liveCount);
+        for (int slot = head; slot != NONE; slot = next[slot]) {
+            emails.add(viewOf(slot));
+        }
+        return emails;
+    }
+
+    @Override
+    public synchronized int countSpam() {
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            byte type = types[slot];
+            if (type != FREE && TYPES[type].isSpam()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void refresh(Email email) {
+        int slot = findSlot(email);
+        if (slot != NONE) {
+            urgent[slot] = email.isUrgent();
+        }
+    }
+
+    @Override
+    public synchronized Email findOldestUrgent() {
+        int oldest = NONE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (types[slot] != FREE && urgent[slot]
+                    && (oldest == NONE || arrivalNanos[slot] < arrivalNanos[oldest])) {
+                oldest = slot;
+            }
+        }
+        return oldest == NONE ? null : viewOf(oldest);
+    }
+
+    /**
+     * Sum the space used by all emails with a scan of the units column
+     */
+    public synchronized long sumOccupiedUnits() {
+        long total = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (types[slot] != FREE) {
+                total += units[slot];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Iterate over emails in arrival order.
+     * Iterates over a snapshot, so the store can change while iterating.
+     */
+    @Override
+    public Iterator<Email> iterator() {
+        return snapshot().iterator();
+    }
+
+    /**
+     * Get the slot an email occupies in this store, or NONE
+     */
+    private int findSlot(Email email) {
+        if (email.inboxHandle != this) {
+            return NONE;
+        }
+        long storeKey = email.storeKey;
+        int slot = (int) storeKey;
+        if (slot < 0 || slot >= slotCount || types[slot] == FREE
+                || generations[slot] != (int) (storeKey >>> 32)) {
+            return NONE;
+        }
+        return slot;
+    }
+
+    private long key(int slot) {
+        return ((long) generations[slot] << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the Email for a slot, building it from the columns the first time
+     */
+    private Email viewOf(int slot) {
+        Email view = views[slot];
+        if (view == null) {
+            view = fullEmails.get(slot);
+            if (view == null) {
+                view = new Email(TYPES[types[slot]], senderSlots[slot], subjectSlots[slot],
+                                 sizes[slot], urgent[slot], clock, arrivalNanos[slot]);
+                view.setId(ids[slot]);
+            }
+            view.inboxHandle = this;
+            view.storeKey = key(slot);
+            views[slot] = view;
+        }
+        return view;
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (slotCount == types.length) {
+            growColumns();
+        }
+        return slotCount++;
+    }
+
+    private void growColumns() {
+        ids = Arrays.copyOf(ids, ids.length * 2);
+        types = Arrays.copyOf(types, types.length * 2);
+        sizes = grow(sizes);
+        units = grow(units);
+        urgent = Arrays.copyOf(urgent, urgent.length * 2);
+        arrivalNanos = Arrays.copyOf(arrivalNanos, arrivalNanos.length * 2);
+        senderSlots = Arrays.copyOf(senderSlots, senderSlots.length * 2);
+        subjectSlots = Arrays.copyOf(subjectSlots, subjectSlots.length * 2);
+        generations = grow(generations);
+        next = grow(next);
+        prev = grow(prev);
+        views = Arrays.copyOf(views, views.length * 2);
+    }
+
+    private static int[] grow(int[] column) {
+        return Arrays.copyOf(column, column.length * 2);
+    }
+}
@@ -0,0 +1,202 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe inbox storage for several producer threads and a UI reader.
+ * Space is reserved with a CAS before an email is linked in, so capacity
+ * can never be overshot. Removal is O(1) through the entry handle kept on
+ * the email, and iteration walks the live entries without copying.
+ */
+public class ConcurrentInbox implements InboxStore {
+    // Removed entries are unlinked in bulk once they outnumber live ones
+    private static final int MIN_PURGE_THRESHOLD = 64;
+
+    private final ConcurrentLinkedQueue<Entry> entries;
+    private final AtomicLong occupiedUnits;
+    private final AtomicInteger liveCount;
+    private final AtomicInteger removedCount;
+    private final AtomicBoolean purging;
+
+    /**
+     * Handle linking an email to its place in the inbox
+     */
+    static final class Entry {
+        private static final AtomicIntegerFieldUpdater<Entry> REMOVED =
+            AtomicIntegerFieldUpdater.newUpdater(Entry.class, "removed");
+
+        final ConcurrentInbox owner;
+        final Email email;
+        final int units;
+        private volatile int removed;
+
+        Entry(ConcurrentInbox owner, Email email, int units) {
+            this.owner = owner;
+            this.email = email;
+            this.units = units;
+        }
+
+        boolean isRemoved() {
+            return removed != 0;
+        }
+
+        boolean markRemoved() {
+            return REMOVED.compareAndSet(this, 0, 1);
+        }
+    }
+
+    /**
+     * Constructor for an empty inbox
+     */
+    public ConcurrentInbox() {
+        entries = new ConcurrentLinkedQueue<>();
+        occupiedUnits = new AtomicLong();
+        liveCount = new AtomicInteger();
+        removedCount = new AtomicInteger();
+        purging = new AtomicBoolean();
+    }
+
+    @Override
+    public boolean tryAdd(Email email, int units, long capacityUnits) {
+        long current;
+        do {
+            current = occupiedUnits.get();
+            if (current + units > capacityUnits) {
+                return false;
+            }
+        } while (!occupiedUnits.compareAndSet(current, current + units));
+
+        Entry entry = new Entry(this, email, units);
+        email.inboxHandle = entry;
+        entries.add(entry);
+        liveCount.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean remove(Email email) {
+        if (!(email.inboxHandle instanceof Entry entry) || entry.owner != this || !entry.markRemoved()) {
+            return false;
+        }
+
+        occupiedUnits.addAndGet(-entry.units);
+        int live = liveCount.decrementAndGet();
+        int removed = removedCount.incrementAndGet();
+        if (removed > MIN_PURGE_THRESHOLD && removed > live) {
+            purgeRemoved();
+        }
+        return true;
+    }
+
+    /**
+     * Unlink removed entries from the queue. Only one thread purges at a time.
+     */
+    private void purgeRemoved() {
+        if (!purging.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int purged = 0;
+            for (Iterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+                if (it.next().isRemoved()) {
+                    it.remove();
+                    purged++;
+                }
+            }
+            removedCount.addAndGet(-purged);
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    @Override
+    public boolean contains(Email email) {
+        return email.inboxHandle instanceof Entry entry && entry.owner == this && !entry.isRemoved();
+    }
+
+    @Override
+    public long getOccupiedUnits() {
+        return occupiedUnits.get();
+    }
+
+    @Override
+    public int size() {
+        return liveCount.get();
+    }
+
+    @Override
+    public List<Email> snapshot() {
+        List<Email> emails = new ArrayList<>(liveCount.get());
+        for (Email email : this) {
+            emails.add(email);
+        }
+        return emails;
+    }
+
+    @Override
+    public int countSpam() {
+        int count = 0;
+        for (Email email : this) {
+            if (email.isSpam()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Email findOldestUrgent() {
+        // Entries are in arrival order, so the first urgent one is the oldest
+        for (Email email : this) {
+            if (email.isUrgent()) {
+                return email;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Iterate over live emails in arrival order.
+     * The iterator is weakly consistent and never throws ConcurrentModificationException.
+     */
+    @Override
+    public Iterator<Email> iterator() {
+        Iterator<Entry> it = entries.iterator();
+        return new Iterator<Email>() {
+            private Email next = advance();
+
+            private Email advance() {
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    if (!entry.isRemoved()) {
+                        return entry.email;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Email next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Email current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+}
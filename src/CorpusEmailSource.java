@@ -0,0 +1,471 @@
+package src;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.UnaryOperator;
+
+/**
+ * Email source that plays back real messages from a local corpus file.
+ * Supports mbox files (messages separated by "From " lines) and JSONL
+ * files (one JSON object per line with from, subject and body fields).
+ *
+ * The corpus is read through a memory-mapped window that slides forward
+ * one message at a time, so multi-GB files play back with flat memory use.
+ * Only the From, Subject and priority headers are decoded; other headers
+ * are skipped without being copied, and an email only remembers where its
+ * body is in the file, reading it when the email is opened. The source
+ * must stay open while its emails are in use.
+ *
+ * Types come from an optional labeling file, streamed alongside the corpus
+ * with one label per message: an EmailType name, or "spam"/"ham". A JSONL
+ * message may also carry its own "label" field. Unlabelled messages get
+ * the default type.
+ */
+public class CorpusEmailSource implements EmailSource, Closeable {
+    /**
+     * Layout of the corpus file
+     */
+    public enum Format {
+        MBOX,
+        JSONL;
+
+        /**
+         * Guess the format from the file extension, defaulting to mbox
+         */
+        public static Format forPath(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            return name.endsWith(".jsonl") || name.endsWith(".ndjson") ? JSONL : MBOX;
+        }
+    }
+
+    // Bytes mapped at a time; a window is re-mapped when a message runs past it
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private static final byte[] MBOX_SEPARATOR = "From ".getBytes(StandardCharsets.US_ASCII);
+
+    private final FileChannel channel;
+    private final long fileSize;
+    private final Format format;
+    private final Path labelFile;
+    private final Email.EmailType defaultType;
+    private final boolean loop;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long windowEnd;
+    private long position;
+    private BufferedReader labels;
+
+    /**
+     * Constructor for a source that plays the corpus once.
+     * labelFile may be null, in which case messages get defaultType.
+     */
+    public CorpusEmailSource(Path corpus, Path labelFile, Email.EmailType defaultType) throws IOException {
+        this(corpus, Format.forPath(corpus), labelFile, defaultType, false);
+    }
+
+    /**
+     * Constructor for a source with an explicit format.
+     * When loop is set the corpus starts again from the top once it runs out.
+     */
+    public CorpusEmailSource(Path corpus, Format format, Path labelFile, Email.EmailType defaultType,
+                             boolean loop) throws IOException {
+        this.channel = FileChannel.open(corpus, StandardOpenOption.READ);
+        this.fileSize = channel.size();
+        this.format = format;
+        this.labelFile = labelFile;
+        this.defaultType = defaultType;
+        this.loop = loop;
+        openLabels();
+    }
+
+    /**
+     * Get the next message from the corpus, or null once it has run out.
+     * The level is ignored; the corpus plays in file order.
+     */
+    @Override
+    public synchronized Email nextEmail(int currentLevel, GameClock clock) {
+        try {
+            Email email = readMessage(clock);
+            if (email == null && loop && fileSize > 0) {
+                position = 0;
+                openLabels();
+                email = readMessage(clock);
+            }
+            return email;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        window = null;
+        if (labels != null) {
+            labels.close();
+        }
+        channel.close();
+    }
+
+    private Email readMessage(GameClock clock) throws IOException {
+        if (format == Format.JSONL) {
+            return readJsonMessage(clock);
+        }
+        return readMboxMessage(clock);
+    }
+
+    /**
+     * Parse one mbox message starting at the current position
+     */
+    private Email readMboxMessage(GameClock clock) throws IOException {
+        // Skip blank lines and the "From " envelope line
+        while (position < fileSize && (byteAt(position) == '\n' || byteAt(position) == '\r')) {
+            position++;
+        }
+        if (position >= fileSize) {
+            return null;
+        }
+        if (startsWith(position, MBOX_SEPARATOR)) {
+            position = lineEnd(position) + 1;
+        }
+
+        // Headers run up to the first empty line; only a few are decoded
+        String sender = null;
+        String subject = null;
+        boolean urgent = false;
+        while (position < fileSize) {
+            long end = lineEnd(position);
+            if (end == position || (end == position + 1 && byteAt(position) == '\r')) {
+                position = end + 1;
+                break;
+            }
+            long next = end + 1;
+            // Folded header lines continue with whitespace
+            while (next < fileSize && (byteAt(next) == ' ' || byteAt(next) == '\t')) {
+                end = lineEnd(next);
+                next = end + 1;
+            }
+            if (sender == null && headerIs(position, "from:")) {
+                sender = displayName(headerValue(position, end));
+            } else if (subject == null && headerIs(position, "subject:")) {
+                subject = headerValue(position, end);
+            } else if (headerIs(position, "x-priority:")) {
+                String priority = headerValue(position, end);
+                urgent |= priority.startsWith("1") || priority.startsWith("2");
+            } else if (headerIs(position, "importance:")) {
+                urgent |= headerValue(position, end).equalsIgnoreCase("high");
+            }
+            position = next;
+        }
+
+        // The body runs up to the next line starting with "From "
+        long bodyStart = Math.min(position, fileSize);
+        long bodyEnd = bodyStart;
+        while (bodyEnd < fileSize && !startsWith(bodyEnd, MBOX_SEPARATOR)) {
+            bodyEnd = lineEnd(bodyEnd) + 1;
+        }
+        bodyEnd = Math.min(bodyEnd, fileSize);
+        EmailContent content = bodyOf(bodyStart, bodyEnd, null);
+        position = bodyEnd;
+
+        return buildEmail(sender, subject, content, urgent, nextLabel(null), clock);
+    }
+
+    /**
+     * Parse one JSONL message starting at the current position
+     */
+    private Email readJsonMessage(GameClock clock) throws IOException {
+        String line = "";
+        long lineStart = position;
+        long lineEnd = position;
+        // Blank lines and records with a broken escape are skipped
+        while (line.isEmpty() || !escapesValid(line)) {
+            if (position >= fileSize) {
+                return null;
+            }
+            lineStart = position;
+            lineEnd = lineEnd(position);
+            line = decode(lineStart, lineEnd).trim();
+            position = lineEnd + 1;
+        }
+
+        String sender = jsonField(line, "from");
+        if (sender == null) {
+            sender = jsonField(line, "sender");
+        }
+        // The body is pulled out of the record again when it is first read
+        EmailContent content = bodyOf(lineStart, lineEnd, record -> {
+            String body = jsonField(record, "body");
+            return body != null ? body : jsonField(record, "content");
+        });
+        String urgent = jsonField(line, "urgent");
+        return buildEmail(displayName(sender), jsonField(line, "subject"), content,
+                          "true".equalsIgnoreCase(urgent), nextLabel(jsonField(line, "label")), clock);
+    }
+
+    private Email buildEmail(String sender, String subject, EmailContent content, boolean urgent,
+                             Email.EmailType type, GameClock clock) {
+        return new Email(sender == null ? "(unknown sender)" : sender,
+                         subject == null ? "(no subject)" : subject,
+                         content, 1, type, urgent || type == Email.EmailType.URGENT, clock, clock.nanoTime());
+    }
+
+    /**
+     * Make a content descriptor for a byte range of the corpus.
+     * Only the offset and length are kept, so an email doesn't hold on to a
+     * mapped window; the range is read from the file when the email is read.
+     * extract, if given, picks the body out of the decoded text.
+     */
+    private EmailContent bodyOf(long from, long to, UnaryOperator<String> extract) {
+        int length = (int) Math.min(to - from, Integer.MAX_VALUE - 8);
+        return () -> {
+            String text = readRange(from, length);
+            String body = extract == null ? text.trim() : extract.apply(text);
+            return body == null ? "" : body;
+        };
+    }
+
+    /**
+     * Read and decode a byte range with a positional read, which is safe
+     * from any thread and leaves the parsing window where it is
+     */
+    private String readRange(long from, int length) {
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        try {
+            while (bytes.hasRemaining() && channel.read(bytes, from + bytes.position()) >= 0) {
+                // Keep reading until the range is complete or the file ends
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read an email body from the corpus", e);
+        }
+        return new String(bytes.array(), 0, bytes.position(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the next label from the labeling file, falling back to the
+     * message's own label and then the default type
+     */
+    private Email.EmailType nextLabel(String inlineLabel) throws IOException {
+        String label = labels == null ? null : labels.readLine();
+        if (label != null) {
+            // Accept "TYPE" or "<message key> TYPE"; the label is the last field
+            label = label.trim();
+            int split = Math.max(label.lastIndexOf(' '), label.lastIndexOf('\t'));
+            label = label.substring(split + 1);
+        } else {
+            label = inlineLabel;
+        }
+        return parseType(label);
+    }
+
+    private Email.EmailType parseType(String label) {
+        if (label == null || label.isEmpty()) {
+            return defaultType;
+        }
+        if (label.equalsIgnoreCase("spam")) {
+            return Email.EmailType.SPAM_PHISHING;
+        }
+        if (label.equalsIgnoreCase("ham")) {
+            return Email.EmailType.LEGITIMATE_WORK;
+        }
+        try {
+            return Email.EmailType.valueOf(label.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return defaultType;
+        }
+    }
+
+    private void openLabels() throws IOException {
+        if (labels != null) {
+            labels.close();
+        }
+        labels = labelFile == null ? null : Files.newBufferedReader(labelFile, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the byte at a file offset, sliding the mapped window if needed
+     */
+    private byte byteAt(long offset) throws IOException {
+        if (offset < windowStart || offset >= windowEnd || window == null) {
+            mapWindow(offset);
+        }
+        return window.get((int) (offset - windowStart));
+    }
+
+    private void mapWindow(long offset) throws IOException {
+        windowStart = offset;
+        windowEnd = Math.min(fileSize, offset + WINDOW_SIZE);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+    }
+
+    /**
+     * Get the offset of the newline ending the line at offset, or the file size
+     */
+    private long lineEnd(long offset) throws IOException {
+        while (offset < fileSize && byteAt(offset) != '\n') {
+            offset++;
+        }
+        return offset;
+    }
+
+    private boolean startsWith(long offset, byte[] prefix) throws IOException {
+        if (offset + prefix.length > fileSize) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (byteAt(offset + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check a header name, ignoring case
+     */
+    private boolean headerIs(long offset, String name) throws IOException {
+        if (offset + name.length() > fileSize) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (Character.toLowerCase((char) byteAt(offset + i)) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode a header's value, unfolding continuation lines
+     */
+    private String headerValue(long offset, long end) throws IOException {
+        while (byteAt(offset) != ':') {
+            offset++;
+        }
+        return decode(offset + 1, end).replaceAll("\\s*\\r?\\n\\s*", " ").trim();
+    }
+
+    private String decode(long from, long to) throws IOException {
+        byte[] bytes = new byte[(int) (to - from)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = byteAt(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Turn "Name <address>" into Name, or the bare address if there is no name
+     */
+    private static String displayName(String from) {
+        if (from == null) {
+            return null;
+        }
+        int angle = from.indexOf('<');
+        if (angle > 0) {
+            String name = from.substring(0, angle).trim();
+            if (name.length() > 1 && name.startsWith("\"") && name.endsWith("\"")) {
+                name = name.substring(1, name.length() - 1);
+            }
+            if (!name.isEmpty()) {
+                return name;
+            }
+        }
+        if (angle >= 0) {
+            int close = from.indexOf('>', angle);
+            return from.substring(angle + 1, close < 0 ? from.length() : close);
+        }
+        return from;
+    }
+
+    /**
+     * Extract a top-level string, number or boolean field from a JSON object.
+     * Just enough JSON for flat corpus records; returns null if absent.
+     */
+    static String jsonField(String json, String name) {
+        String key = "\"" + name + "\"";
+        int at = json.indexOf(key);
+        while (at >= 0) {
+            int i = at + key.length();
+            while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                i++;
+            }
+            if (i < json.length() && json.charAt(i) == ':') {
+                i++;
+                while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+                    i++;
+                }
+                return i < json.length() && json.charAt(i) == '"' ? jsonString(json, i + 1) : jsonLiteral(json, i);
+            }
+            at = json.indexOf(key, at + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Check that every \\u escape in a JSON record has four hex digits,
+     * so its fields, including the body read later, can be parsed
+     */
+    static boolean escapesValid(String json) {
+        for (int i = json.indexOf('\\'); i >= 0; i = json.indexOf('\\', i + 2)) {
+            if (i + 1 < json.length() && json.charAt(i + 1) == 'u') {
+                if (i + 6 > json.length()) {
+                    return false;
+                }
+                for (int j = i + 2; j < i + 6; j++) {
+                    if (Character.digit(json.charAt(j), 16) < 0) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String jsonString(String json, int i) {
+        StringBuilder value = new StringBuilder();
+        while (i < json.length()) {
+            char c = json.charAt(i++);
+            if (c == '"') {
+                return value.toString();
+            }
+            if (c != '\\' || i >= json.length()) {
+                value.append(c);
+                continue;
+            }
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n': value.append('\n'); break;
+                case 't': value.append('\t'); break;
+                case 'r': value.append('\r'); break;
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'u':
+                    if (i + 4 <= json.length()) {
+                        value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                        i += 4;
+                    }
+                    break;
+                default: value.append(escaped); break;
+            }
+        }
+        return value.toString();
+    }
+
+    private static String jsonLiteral(String json, int i) {
+        int end = i;
+        while (end < json.length() && ",}] \t".indexOf(json.charAt(end)) < 0) {
+            end++;
+        }
+        String literal = json.substring(i, end);
+        return literal.equals("null") ? null : literal;
+    }
+}
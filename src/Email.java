@@ -9,49 +9,119 @@ import java.time.LocalDateTime;
 public class Email {
     // Email types
     public enum EmailType {
-        LEGITIMATE_WORK,
-        LEGITIMATE_PERSONAL,
-        LEGITIMATE_SUBSCRIPTION,
-        LEGITIMATE_ACCOUNT,
-        SPAM_PHISHING,
-        SPAM_PROMOTIONAL,
-        SPAM_SCAM,
-        SPAM_MALWARE,
-        URGENT,
-        CHAIN,
-        LARGE_ATTACHMENT
+        LEGITIMATE_WORK(false),
+        LEGITIMATE_PERSONAL(false),
+        LEGITIMATE_SUBSCRIPTION(false),
+        LEGITIMATE_ACCOUNT(false),
+        SPAM_PHISHING(true),
+        SPAM_PROMOTIONAL(true),
+        SPAM_SCAM(true),
+        SPAM_MALWARE(true),
+        URGENT(false),
+        CHAIN(false),
+        LARGE_ATTACHMENT(false);
+        
+        private final boolean spam;
+        
+        EmailType(boolean spam) {
+            this.spam = spam;
+        }
+        
+        /**
+         * Check if emails of this type are spam
+         */
+        public boolean isSpam() {
+            return spam;
+        }
     }
     
+    // Seconds the player has to deal with urgent and chain emails
+    static final int URGENT_RESPONSE_SECONDS = 30;
+    static final int CHAIN_RESPONSE_SECONDS = 60;
+    
+    // Marks a slot field for an email that carries its own text
+    static final byte NO_TEMPLATE = -1;
+    
     // Email properties
+    private long id; // Assigned by EmailSystem, 0 until then
+    // Generated emails leave the text fields null and point into EmailTemplates instead
     private String sender;
     private String subject;
-    private String content;
+    private String content; // Cached body, loaded from contentSource on first read
+    private EmailContent contentSource;
+    private byte senderSlot;
+    private byte subjectSlot;
     private int size;
     private EmailType type;
     private boolean urgent;
+    // Arrival as a nanoTime() reading of the clock; wall time is worked out on demand
+    private GameClock clock;
+    private long receivedNanos;
     private LocalDateTime timeReceived;
+    private String timeReceivedText;
+    // Payload in the AttachmentStore, for large attachment emails when one is in use
+    private AttachmentStore.Attachment attachment;
+    
+    // Handle to this email's place in the inbox, set while it is stored there.
+    // Its meaning depends on the InboxStore; slot-based stores also use storeKey.
+    volatile Object inboxHandle;
+    volatile long storeKey;
+    
+    // Pending response deadline, set by GameManager while one is scheduled
+    volatile TimingWheel.Timeout<Email> deadline;
     
     /**
      * Constructor for creating a new email
      */
     public Email(String sender, String subject, String content, int size, EmailType type, boolean urgent) {
+        this(sender, subject, content, size, type, urgent, GameClock.SYSTEM, GameClock.SYSTEM.nanoTime());
+    }
+    
+    /**
+     * Constructor for an email with its own text received at a given clock reading
+     */
+    Email(String sender, String subject, String content, int size, EmailType type, boolean urgent,
+          GameClock clock, long receivedNanos) {
         this.sender = sender;
         this.subject = subject;
         this.content = content;
+        this.senderSlot = NO_TEMPLATE;
+        this.subjectSlot = NO_TEMPLATE;
+        this.size = size;
+        this.type = type;
+        this.urgent = urgent;
+        this.clock = clock;
+        this.receivedNanos = receivedNanos;
+    }
+    
+    /**
+     * Constructor for an email whose body is decoded on first read
+     */
+    Email(String sender, String subject, EmailContent contentSource, int size, EmailType type, boolean urgent,
+          GameClock clock, long receivedNanos) {
+        this(sender, subject, (String) null, size, type, urgent, clock, receivedNanos);
+        this.contentSource = contentSource;
+    }
+    
+    /**
+     * Constructor for a generated email whose text comes from EmailTemplates
+     */
+    Email(EmailType type, int senderSlot, int subjectSlot, int size, boolean urgent,
+          GameClock clock, long receivedNanos) {
+        this.senderSlot = (byte) senderSlot;
+        this.subjectSlot = (byte) subjectSlot;
         this.size = size;
         this.type = type;
         this.urgent = urgent;
-        this.timeReceived = LocalDateTime.now();
+        this.clock = clock;
+        this.receivedNanos = receivedNanos;
     }
     
     /**
      * Check if this email is spam based on its type
      */
     public boolean isSpam() {
-        return type == EmailType.SPAM_PHISHING || 
-               type == EmailType.SPAM_PROMOTIONAL || 
-               type == EmailType.SPAM_SCAM || 
-               type == EmailType.SPAM_MALWARE;
+        return type.isSpam();
     }
     
     /**
@@ -61,25 +131,101 @@ public class Email {
         return !isSpam();
     }
     
+    /**
+     * Get the time the player has to handle this email, or 0 if it never expires
+     */
+    public int getResponseWindowSeconds() {
+        if (urgent) {
+            return URGENT_RESPONSE_SECONDS;
+        }
+        if (type == EmailType.CHAIN) {
+            return CHAIN_RESPONSE_SECONDS;
+        }
+        return 0;
+    }
+    
     /**
      * Return a display string for the email in the inbox list
      */
     public String getDisplayString() {
         String urgentPrefix = urgent ? "[URGENT] " : "";
-        return urgentPrefix + sender + " - " + subject;
+        return urgentPrefix + getSender() + " - " + getSubject();
     }
     
     // Getters and setters
+    public long getId() {
+        return id;
+    }
+    
+    void setId(long id) {
+        this.id = id;
+    }
+    
     public String getSender() {
-        return sender;
+        return sender != null ? sender : EmailTemplates.getSender(type, senderSlot);
     }
     
     public String getSubject() {
-        return subject;
+        return subject != null ? subject : EmailTemplates.getSubject(type, subjectSlot);
     }
     
     public String getContent() {
-        return content;
+        String text = content;
+        if (text == null && contentSource != null) {
+            text = contentSource.load();
+            content = text;
+        }
+        return text != null ? text : EmailTemplates.getContent(type, senderSlot);
+    }
+    
+    /**
+     * Get the body for a one-off scan such as indexing or spam scoring,
+     * without caching it if it has not been loaded yet
+     */
+    String scanContent() {
+        String text = content;
+        if (text == null && contentSource != null) {
+            return contentSource.load();
+        }
+        return text != null ? text : EmailTemplates.getContent(type, senderSlot);
+    }
+    
+    /**
+     * Check if this email can be rebuilt from its type, slots and flags alone:
+     * its text comes from EmailTemplates and it has no attachment
+     */
+    boolean isCompact() {
+        return senderSlot != NO_TEMPLATE && attachment == null;
+    }
+    
+    AttachmentStore.Attachment getAttachment() {
+        return attachment;
+    }
+    
+    void setAttachment(AttachmentStore.Attachment attachment) {
+        this.attachment = attachment;
+    }
+    
+    /**
+     * Get the attachment size before compression, or 0 if there is none
+     */
+    public int getAttachmentSize() {
+        return attachment == null ? 0 : attachment.getRawLength();
+    }
+    
+    /**
+     * Get the bytes the attachment takes up once stored, or 0 if there is none
+     */
+    public int getStoredAttachmentSize() {
+        return attachment == null ? 0 : attachment.getStoredLength();
+    }
+    
+    int getSenderSlot() {
+        return senderSlot;
+    }
+    
+    int getSubjectSlot() {
+        return subjectSlot;
     }
     
     public int getSize() {
@@ -94,8 +240,46 @@ public class Email {
         return urgent;
     }
     
+    /**
+     * Make this email urgent, such as a chain email left too long
+     */
+    void escalateToUrgent() {
+        urgent = true;
+    }
+    
+    /**
+     * Get the arrival time as a reading of the game clock, in nanoseconds
+     */
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+    
+    GameClock getClock() {
+        return clock;
+    }
+    
+    /**
+     * Get the wall-clock arrival time, converted on first use
+     */
     public LocalDateTime getTimeReceived() {
-        return timeReceived;
+        LocalDateTime time = timeReceived;
+        if (time == null) {
+            time = clock.toWallTime(receivedNanos);
+            timeReceived = time;
+        }
+        return time;
+    }
+    
+    /**
+     * Get the arrival time of day for display, formatted on first use
+     */
+    public String getTimeReceivedText() {
+        String text = timeReceivedText;
+        if (text == null) {
+            text = getTimeReceived().toLocalTime().toString();
+            timeReceivedText = text;
+        }
+        return text;
     }
     
     /**
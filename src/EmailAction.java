@@ -0,0 +1,45 @@
+package src;
+
+/**
+ * What the player can do with an email in the inbox.
+ * GameManager scores each action by whether it suits the email's type.
+ */
+public enum EmailAction {
+    RESPOND("respond"),
+    DELETE("delete"),
+    MARK_SPAM("mark_spam"),
+    IGNORE("ignore");
+
+    private final String name;
+
+    EmailAction(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the action's name, such as "mark_spam"
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Check if the action treats the email as spam, which the spam filter
+     * learns from
+     */
+    public boolean treatsAsSpam() {
+        return this == DELETE || this == MARK_SPAM;
+    }
+
+    /**
+     * Find the action with the given name
+     */
+    public static EmailAction fromName(String name) {
+        for (EmailAction action : values()) {
+            if (action.name.equals(name)) {
+                return action;
+            }
+        }
+        throw new IllegalArgumentException("Unknown email action: " + name);
+    }
+}
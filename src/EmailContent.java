@@ -0,0 +1,12 @@
+package src;
+
+/**
+ * Cheap handle to an email body that is only decoded when someone reads it,
+ * such as a slice of a memory-mapped corpus file.
+ */
+public interface EmailContent {
+    /**
+     * Decode the body text
+     */
+    String load();
+}
@@ -3,6 +3,15 @@ package src;
 import javax.swing.*;
 import java.awt.*;
 import javax.swing.border.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
 
 /**
  * Main class for the Email Defender game.
@@ -11,14 +20,55 @@ import javax.swing.border.*;
 public class EmailDefender {
     private JFrame mainFrame;
     private GameManager gameManager;
+    private Path savePath; // Where the game is saved on exit, or null
+    private ActionJournal journal; // Closed on exit, or null when not journaling
+    private CorpusEmailSource corpus; // Closed on exit, or null for synthetic emails
+
+    // Start time used by the clock in seeded runs
+    private static final LocalDateTime SEEDED_START_TIME = LocalDateTime.of(2000, 1, 1, 9, 0);
+
+    // Where the game is journaled and saved unless the command line says otherwise
+    private static final String DEFAULT_JOURNAL = "email-defender.journal";
+    private static final String DEFAULT_SAVE = "email-defender.save";
+
+    // Printed when the command line can't be parsed
+    private static final String USAGE =
+        "Usage: EmailDefender [--seed <n>] [--journal <file> | --no-journal] [--save <file> | --no-save]"
+        + " [--corpus <mbox or jsonl file> [--labels <file>]]";
 
     public EmailDefender() {
+        this(null, Paths.get(DEFAULT_JOURNAL), Paths.get(DEFAULT_SAVE));
+    }
+
+    /**
+     * Create the game, seeded for a reproducible run if seed is not null,
+     * and journaled to journalPath if it is not null. If savePath is not
+     * null, a game saved there is resumed and the game is saved there on exit.
+     */
+    public EmailDefender(Long seed, Path journalPath, Path savePath) {
+        this(seed, journalPath, savePath, null);
+    }
+
+    /**
+     * Create the game as above, with new emails played back from corpus
+     * if it is not null. Emails from a corpus can't be regenerated from
+     * the seed, so such a game is never journaled.
+     */
+    public EmailDefender(Long seed, Path journalPath, Path savePath, CorpusEmailSource corpus) {
+        this.savePath = savePath;
+        this.corpus = corpus;
         // Apply Windows 95 theme
         Windows95Theme.apply();
 
         // Create the main application frame with Windows 95 styling
         mainFrame = new JFrame("Email Defender");
-        mainFrame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        mainFrame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        mainFrame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exit();
+            }
+        });
         mainFrame.setSize(800, 600);
         mainFrame.setLocationRelativeTo(null); // Center on screen
         mainFrame.setBackground(Windows95Theme.WINDOW_BG);
@@ -32,10 +82,34 @@ public class EmailDefender {
         contentPanel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
         // Initialize game components
-        Player player = new Player();
-        EmailSystem emailSystem = new EmailSystem();
-        UpgradeSystem upgradeSystem = new UpgradeSystem();
-        gameManager = new GameManager(player, emailSystem, upgradeSystem);
+        gameManager = createGame(seed);
+
+        // Pick up where the last game left off
+        boolean resumed = false;
+        if (savePath != null && Files.exists(savePath)) {
+            try {
+                GameSnapshot.load(savePath, gameManager);
+                resumed = true;
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Could not resume the saved game, starting a new one: " + e);
+                gameManager = createGame(seed); // The failed load may have been half applied
+            }
+        }
+        if (corpus != null) {
+            gameManager.getEmailSystem().setEmailSource(corpus);
+        }
+
+        // Journal the game so it can be replayed with JournalReplay. A journal
+        // replays from a new game, so a resumed game isn't journaled and the
+        // journal of the session that started it is left as it was.
+        if (journalPath != null && !resumed && corpus == null) {
+            try {
+                journal = new ActionJournal(journalPath, gameManager.getEmailSystem().getClock());
+                gameManager.setJournal(journal);
+            } catch (IOException e) {
+                System.err.println("Not journaling this game: " + e);
+            }
+        }
 
         // Create the main screen
         MainScreen mainScreen = new MainScreen(gameManager);
@@ -43,8 +117,8 @@ public class EmailDefender {
         // Add Windows 95 style to the main screen
         applyWindows95Style(mainScreen);
 
-        // Set the main screen reference in game manager
-        gameManager.setMainScreen(mainScreen);
+        // Show game events on the main screen
+        gameManager.setListener(new SwingGameListener(mainScreen));
 
         // Add components to content panel
         contentPanel.add(mainScreen, BorderLayout.CENTER);
@@ -58,8 +132,10 @@ public class EmailDefender {
         JMenuBar menuBar = createMenuBar();
         mainFrame.setJMenuBar(menuBar);
 
-        // Show the tutorial on first run
-        showTutorial();
+        // Show the tutorial on first run; a resumed game goes straight on
+        if (!resumed) {
+            showTutorial();
+        }
 
         // Display the frame
         mainFrame.setVisible(true);
@@ -68,6 +144,62 @@ public class EmailDefender {
         gameManager.startGameLoop();
     }
 
+    /**
+     * Create the game components, seeded for a reproducible run if seed is not null
+     */
+    private static GameManager createGame(Long seed) {
+        Player player = new Player();
+        UpgradeSystem upgradeSystem = new UpgradeSystem();
+        GameManager game;
+        if (seed != null) {
+            // Derive independent seeds for each component from the run seed
+            SplittableRandom seeds = new SplittableRandom(seed);
+            ManualGameClock clock = new ManualGameClock(SEEDED_START_TIME);
+            EmailSystem emailSystem = new EmailSystem(seeds.nextLong(), clock);
+            game = new GameManager(player, emailSystem, upgradeSystem, seeds.nextLong(), clock);
+        } else {
+            EmailSystem emailSystem = new EmailSystem();
+            game = new GameManager(player, emailSystem, upgradeSystem);
+        }
+        // Large attachments carry real payloads, kept off the heap
+        game.getEmailSystem().setAttachmentStore(AttachmentStore.createTemporary());
+        return game;
+    }
+
+    /**
+     * Save the game if it is still going, or drop the save if it is over,
+     * close the journal, then quit
+     */
+    private void exit() {
+        if (savePath != null) {
+            try {
+                if (gameManager.isGameRunning()) {
+                    gameManager.pauseGame(); // Hold the inbox still while it is written
+                    GameSnapshot.save(gameManager, savePath);
+                } else {
+                    Files.deleteIfExists(savePath);
+                }
+            } catch (IOException e) {
+                System.err.println("Could not save the game: " + e);
+            }
+        }
+        if (journal != null) {
+            try {
+                journal.close(); // Writes out the last group-commit batch
+            } catch (IOException e) {
+                System.err.println("Could not close the journal: " + e);
+            }
+        }
+        if (corpus != null) {
+            try {
+                corpus.close();
+            } catch (IOException e) {
+                System.err.println("Could not close the corpus: " + e);
+            }
+        }
+        System.exit(0);
+    }
+
     /**
      * Create a Windows 95 style title bar
      */
@@ -88,7 +220,7 @@ public class EmailDefender {
         JButton closeButton = createTitleBarButton("X");
 
         // Add action listener for close button
-        closeButton.addActionListener(e -> System.exit(0));
+        closeButton.addActionListener(e -> exit());
 
         controlBox.add(minimizeButton);
         controlBox.add(maximizeButton);
@@ -127,7 +259,7 @@ public class EmailDefender {
         JMenuItem newGameItem = new JMenuItem("New Game");
         JMenuItem exitItem = new JMenuItem("Exit");
 
-        exitItem.addActionListener(e -> System.exit(0));
+        exitItem.addActionListener(e -> exit());
 
         fileMenu.add(newGameItem);
         fileMenu.addSeparator();
@@ -251,9 +383,66 @@ public class EmailDefender {
     }
 
     public static void main(String[] args) {
+        // "--seed <n>" starts a reproducible run, which is never saved or resumed.
+        // "--journal <file>" and "--save <file>" pick where the game is journaled
+        // and saved, and "--no-journal" and "--no-save" turn those off.
+        // "--corpus <file>" plays real messages from an mbox or JSONL file,
+        // typed by "--labels <file>" (one label per message).
+        Long seed = null;
+        Path journal = Paths.get(DEFAULT_JOURNAL);
+        Path save = Paths.get(DEFAULT_SAVE);
+        Path corpusPath = null;
+        Path labels = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                boolean hasValue = i + 1 < args.length;
+                if (args[i].equals("--seed") && hasValue) {
+                    seed = Long.parseLong(args[++i]);
+                } else if (args[i].equals("--journal") && hasValue) {
+                    journal = Paths.get(args[++i]);
+                } else if (args[i].equals("--no-journal")) {
+                    journal = null;
+                } else if (args[i].equals("--save") && hasValue) {
+                    save = Paths.get(args[++i]);
+                } else if (args[i].equals("--no-save")) {
+                    save = null;
+                } else if (args[i].equals("--corpus") && hasValue) {
+                    corpusPath = Paths.get(args[++i]);
+                } else if (args[i].equals("--labels") && hasValue) {
+                    labels = Paths.get(args[++i]);
+                } else {
+                    System.err.println("Unknown or incomplete option: " + args[i]);
+                    System.err.println(USAGE);
+                    return;
+                }
+            }
+        } catch (NumberFormatException | InvalidPathException e) {
+            System.err.println("Bad option value: " + e.getMessage());
+            System.err.println(USAGE);
+            return;
+        }
+        if (labels != null && corpusPath == null) {
+            System.err.println("--labels needs a --corpus");
+            System.err.println(USAGE);
+            return;
+        }
+        CorpusEmailSource corpus = null;
+        if (corpusPath != null) {
+            try {
+                corpus = new CorpusEmailSource(corpusPath, labels, Email.EmailType.LEGITIMATE_WORK);
+            } catch (IOException e) {
+                System.err.println("Could not open the corpus: " + e);
+                return;
+            }
+        }
+        Long runSeed = seed;
+        Path runJournal = journal;
+        Path runSave = seed != null ? null : save;
+        CorpusEmailSource runCorpus = corpus;
+        
         // Create and run the application on the EDT
         SwingUtilities.invokeLater(() -> {
-            new EmailDefender();
+            new EmailDefender(runSeed, runJournal, runSave, runCorpus);
         });
     }
 }
\ No newline at end of file
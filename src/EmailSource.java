@@ -0,0 +1,13 @@
+package src;
+
+/**
+ * Pluggable source of incoming emails for EmailSystem.
+ * When no source is set, EmailSystem synthesizes emails from EmailTemplates.
+ */
+public interface EmailSource {
+    /**
+     * Get the next email to deliver, or null if the source has run out.
+     * The clock should be used to timestamp the email.
+     */
+    Email nextEmail(int currentLevel, GameClock clock);
+}
@@ -1,248 +1,470 @@
 package src;
 
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.random.RandomGenerator;
 
 /**
  * Manages email generation and delivery.
  * Controls inbox capacity and tracks email status.
  */
 public class EmailSystem {
-    private List<Email> inbox;
+    private InboxStore inbox;
     private int inboxCapacity;
     private Random random;
+    private GameClock clock;
+    private AtomicLong nextEmailId;
     
-    // Email templates for generation
-    private String[] workSenders = {"Boss", "Manager", "HR Dept", "IT Support", "Colleague"};
-    private String[] workSubjects = {"Project Update", "Meeting Request", "Report Due", "System Update", "Task Assignment"};
+    // Search over inbox emails (Search Function upgrade), null when disabled.
+    // Both structures hold every inbox email on the heap, so they are off
+    // until something needs them.
+    private volatile SearchIndex searchIndex;
     
-    private String[] personalSenders = {"Friend", "Family", "Spouse", "School", "Doctor"};
-    private String[] personalSubjects = {"Hello!", "Weekend Plans", "Important News", "Check-in", "Invitation"};
+    // Emails ordered by urgency, deadline and age, null when disabled
+    private volatile UrgencyQueue urgencyQueue;
     
-    private String[] spamSenders = {"Prize Dept", "Security Alert", "Account Service", "Lottery Win", "Unknown"};
-    private String[] spamSubjects = {"You Won!", "Account Alert", "Urgent Action Required", "Special Offer", "Security Warning"};
+    // Where new emails come from; null means synthesize them from templates
+    private volatile EmailSource emailSource;
+    
+    // Inbox occupancy is kept as a running total in fixed-point units
+    // (SIZE_UNIT per size point) so compressed attachments can take up
+    // a fraction of a slot without rescanning the inbox
+    static final int SIZE_UNIT = 1000;
+    private volatile long capacityUnits;
+    
+    // Attachment payloads, null to charge large attachments one slot each.
+    // A stored payload is charged by its compressed size, SLOT_BYTES per slot.
+    static final int SLOT_BYTES = 1024 * 1024;
+    private static final int MIN_ATTACHMENT_BYTES = 512 * 1024;
+    private static final int MAX_ATTACHMENT_BYTES = 1024 * 1024;
+    private static final Email.EmailType[] ATTACHMENT_TEXT_TYPES = Email.EmailType.values();
+    private volatile AttachmentStore attachmentStore;
+    private volatile int attachmentCompressionLevel = Deflater.NO_COMPRESSION;
+    
+    // Payload bytes come from their own stream per email, seeded from this
+    // and the email's id, so the same seed makes the same emails whether or
+    // not a store is set
+    private final long attachmentSeed;
+    
+    // Batches smaller than this are generated on a single thread
+    private static final int PARALLEL_BATCH_THRESHOLD = 4096;
     
     /**
      * Constructor for the email system
      */
     public EmailSystem() {
-        inbox = new CopyOnWriteArrayList<>(); // Thread-safe list for concurrent modifications
+        // Lock-free inbox for concurrent modifications
+        this(new Random(), new SplittableRandom().nextLong(), GameClock.SYSTEM, new ConcurrentInbox());
+    }
+    
+    /**
+     * Constructor for a seeded email system.
+     * The same seed and clock produce the same stream of emails.
+     */
+    public EmailSystem(long seed, GameClock clock) {
+        this(new Random(seed), new SplittableRandom(seed).nextLong(), clock, new ConcurrentInbox());
+    }
+    
+    /**
+     * Constructor for a seeded email system with a specific inbox store,
+     * such as a ColumnarInboxStore for simulations
+     */
+    public EmailSystem(long seed, GameClock clock, InboxStore inbox) {
+        this(new Random(seed), new SplittableRandom(seed).nextLong(), clock, inbox);
+    }
+    
+    private EmailSystem(Random random, long attachmentSeed, GameClock clock, InboxStore inbox) {
+        this.inbox = inbox;
         inboxCapacity = 3; // Default capacity from the spec
-        random = new Random();
+        capacityUnits = (long) inboxCapacity * SIZE_UNIT;
+        this.random = random;
+        this.attachmentSeed = attachmentSeed;
+        this.clock = clock;
+        nextEmailId = new AtomicLong();
     }
     
     /**
      * Generate a new email based on the current game level
      */
     public Email generateEmail(int currentLevel) {
+        EmailSource source = emailSource;
+        if (source != null) {
+            Email email = source.nextEmail(currentLevel, clock);
+            if (email != null) {
+                email.setId(nextEmailId.incrementAndGet());
+                return email;
+            }
+            // The source has run out; fall back to synthetic emails
+        }
+        return generateEmail(currentLevel, random);
+    }
+    
+    /**
+     * Set where new emails come from, such as a CorpusEmailSource.
+     * Pass null to go back to synthetic emails. Batch generation is
+     * always synthetic.
+     */
+    public void setEmailSource(EmailSource source) {
+        emailSource = source;
+    }
+    
+    /**
+     * Generate a new email using the given random stream
+     */
+    private Email generateEmail(int currentLevel, RandomGenerator random) {
         // Determine email type based on level
         // Higher levels have more complex and spam emails
-        Email.EmailType emailType = determineEmailType(currentLevel);
+        Email.EmailType emailType = determineEmailType(currentLevel, random);
         
-        // Generate appropriate content based on type
-        String sender = "";
-        String subject = "";
-        String content = "";
-        int size = 1;
         boolean urgent = random.nextDouble() < 0.1; // 10% chance of being urgent
-        
-        switch(emailType) {
-            case LEGITIMATE_WORK:
-                sender = workSenders[random.nextInt(workSenders.length)];
-                subject = workSubjects[random.nextInt(workSubjects.length)];
-                content = "This is a work-related email requiring your attention.";
-                //size = random.nextInt(3) + 1; // Size 1-3
-                size = 1;
-                break;
-                
-            case LEGITIMATE_PERSONAL:
-                sender = personalSenders[random.nextInt(personalSenders.length)];
-                subject = personalSubjects[random.nextInt(personalSubjects.length)];
-                content = "This is a personal email from " + sender + ".";
-                //size = random.nextInt(2) + 1; // Size 1-2
-                size = 1;
-                break;
-                
-            case LEGITIMATE_SUBSCRIPTION:
-                sender = "Newsletter";
-                subject = "Your Weekly Update";
-                content = "Thank you for subscribing to our newsletter.";
-                size = 1;
-                break;
-                
-            case LEGITIMATE_ACCOUNT:
-                sender = "Account Services";
-                subject = "Account Notification";
-                content = "This is a notification about your account.";
-                size = 1;
-                break;
-                
-            case SPAM_PHISHING:
-                sender = spamSenders[random.nextInt(spamSenders.length)];
-                subject = spamSubjects[random.nextInt(spamSubjects.length)];
-                content = "Please click this link to claim your prize!";
-                //size = random.nextInt(2) + 1; // Size 1-2
-                size = 1;
-                break;
-                
-            case SPAM_PROMOTIONAL:
-                sender = "Marketing";
-                subject = "Special Offer Inside!";
-                content = "Limited time offer! Buy now!";
-                size = 1;
-                break;
-                
-            case SPAM_SCAM:
-                sender = "Prince";
-                subject = "Business Proposal";
-                content = "I need your help to transfer $10,000,000...";
-                size = 1;
-                break;
-                
-            case SPAM_MALWARE:
-                sender = "System Admin";
-                subject = "Security Update Required";
-                content = "Please download this attachment immediately.";
-                size = 1; // Malware tends to be larger
-                break;
-                
-            case URGENT:
-                sender = workSenders[random.nextInt(workSenders.length)];
-                subject = "URGENT: " + workSubjects[random.nextInt(workSubjects.length)];
-                content = "This requires your immediate attention!";
-                //size = random.nextInt(3) + 1;
-                size = 1;
-                urgent = true; // Always urgent
-                break;
-                
-            case CHAIN:
-                sender = "Multiple Recipients";
-                subject = "Re: Re: Re: Important Discussion";
-                content = "This is part of an ongoing discussion thread.";
-                //size = random.nextInt(4) + 2; // Size 2-5 (larger due to chain)
-                size = 1;
-                break;
-                
-            case LARGE_ATTACHMENT:
-                sender = workSenders[random.nextInt(workSenders.length)];
-                subject = "Files Attached";
-                content = "I've attached the requested files.";
-                //size = random.nextInt(5) + 5; // Size 5-9 (large attachment)
-                size = 1;
-                break;
+        if (emailType == Email.EmailType.URGENT) {
+            urgent = true; // Always urgent
         }
         
-        return new Email(sender, subject, content, size, emailType, urgent);
+        // Pick sender and subject slots from the shared template table
+        int senderSlot = random.nextInt(EmailTemplates.getSenderCount(emailType));
+        int subjectSlot = random.nextInt(EmailTemplates.getSubjectCount(emailType));
+        int size = 1;
+        
+        Email email = new Email(emailType, senderSlot, subjectSlot, size, urgent, clock, clock.nanoTime());
+        email.setId(nextEmailId.incrementAndGet());
+        
+        AttachmentStore attachments = attachmentStore;
+        if (emailType == Email.EmailType.LARGE_ATTACHMENT && attachments != null) {
+            SplittableRandom payloadRandom = new SplittableRandom(attachmentSeed ^ email.getId());
+            email.setAttachment(attachments.store(makeAttachmentPayload(payloadRandom), attachmentCompressionLevel));
+        }
+        return email;
     }
     
     /**
-     * Determine which type of email to generate based on the current level
+     * Make a synthetic attachment: a mix of document text, which compresses
+     * well, and binary blocks such as embedded images, which don't
      */
-    private Email.EmailType determineEmailType(int currentLevel) {
-        double rand = random.nextDouble();
-        
-        // Adjust probabilities based on level
-        // Higher levels have more spam and special events
-        if (currentLevel <= 3) {
-            // Early levels - mostly legitimate emails with little spam
-            if (rand < 0.8) {
-                // 80% chance of legitimate email
-                double legitType = random.nextDouble();
-                if (legitType < 0.4) return Email.EmailType.LEGITIMATE_WORK;
-                else if (legitType < 0.7) return Email.EmailType.LEGITIMATE_PERSONAL;
-                else if (legitType < 0.9) return Email.EmailType.LEGITIMATE_SUBSCRIPTION;
-                else return Email.EmailType.LEGITIMATE_ACCOUNT;
-            } else {
-                // 20% chance of spam
-                double spamType = random.nextDouble();
-                if (spamType < 0.4) return Email.EmailType.SPAM_PROMOTIONAL;
-                else if (spamType < 0.7) return Email.EmailType.SPAM_PHISHING;
-                else if (spamType < 0.9) return Email.EmailType.SPAM_SCAM;
-                else return Email.EmailType.SPAM_MALWARE;
-            }
-        } else if (currentLevel <= 6) {
-            // Mid levels - more spam and some special events
-            if (rand < 0.1) return Email.EmailType.URGENT;
-            else if (rand < 0.2) return Email.EmailType.LARGE_ATTACHMENT;
-            else if (rand < 0.5) {
-                // 30% chance of spam
-                double spamType = random.nextDouble();
-                if (spamType < 0.3) return Email.EmailType.SPAM_PROMOTIONAL;
-                else if (spamType < 0.6) return Email.EmailType.SPAM_PHISHING;
-                else if (spamType < 0.8) return Email.EmailType.SPAM_SCAM;
-                else return Email.EmailType.SPAM_MALWARE;
+    private static byte[] makeAttachmentPayload(RandomGenerator random) {
+        byte[] payload = new byte[random.nextInt(MIN_ATTACHMENT_BYTES, MAX_ATTACHMENT_BYTES + 1)];
+        byte[] block = new byte[4096];
+        for (int offset = 0; offset < payload.length; offset += block.length) {
+            int length = Math.min(block.length, payload.length - offset);
+            if (random.nextDouble() < 0.6) {
+                // Text block built from template subjects
+                int filled = 0;
+                while (filled < length) {
+                    Email.EmailType type = ATTACHMENT_TEXT_TYPES[random.nextInt(ATTACHMENT_TEXT_TYPES.length)];
+                    String words = EmailTemplates.getSubject(type, random.nextInt(EmailTemplates.getSubjectCount(type)));
+                    for (int i = 0; i < words.length() && filled < length; i++) {
+                        payload[offset + filled++] = (byte) words.charAt(i);
+                    }
+                    if (filled < length) {
+                        payload[offset + filled++] = ' ';
+                    }
+                }
             } else {
-                // 50% chance of legitimate email
-                double legitType = random.nextDouble();
-                if (legitType < 0.3) return Email.EmailType.LEGITIMATE_WORK;
-                else if (legitType < 0.6) return Email.EmailType.LEGITIMATE_PERSONAL;
-                else if (legitType < 0.8) return Email.EmailType.LEGITIMATE_SUBSCRIPTION;
-                else return Email.EmailType.LEGITIMATE_ACCOUNT;
+                random.nextBytes(block);
+                System.arraycopy(block, 0, payload, offset, length);
             }
-        } else {
-            // Higher levels - more complex distribution
-            if (rand < 0.15) return Email.EmailType.URGENT;
-            else if (rand < 0.25) return Email.EmailType.CHAIN;
-            else if (rand < 0.35) return Email.EmailType.LARGE_ATTACHMENT;
-            else if (rand < 0.6) {
-                // 25% chance of spam
-                double spamType = random.nextDouble();
-                if (spamType < 0.25) return Email.EmailType.SPAM_PROMOTIONAL;
-                else if (spamType < 0.5) return Email.EmailType.SPAM_PHISHING;
-                else if (spamType < 0.75) return Email.EmailType.SPAM_SCAM;
-                else return Email.EmailType.SPAM_MALWARE;
-            } else {
-                // 40% chance of legitimate email
-                double legitType = random.nextDouble();
-                if (legitType < 0.25) return Email.EmailType.LEGITIMATE_WORK;
-                else if (legitType < 0.5) return Email.EmailType.LEGITIMATE_PERSONAL;
-                else if (legitType < 0.75) return Email.EmailType.LEGITIMATE_SUBSCRIPTION;
-                else return Email.EmailType.LEGITIMATE_ACCOUNT;
+        }
+        return payload;
+    }
+    
+    /**
+     * Fill part of a buffer with newly generated emails.
+     * Only the caller's random stream is used, so each thread can fill its
+     * own batch from a split of one SplittableRandom without contention.
+     */
+    public void generateEmails(int currentLevel, Email[] buffer, int offset, int count, SplittableRandom rng) {
+        Objects.checkFromIndexSize(offset, count, buffer.length);
+        for (int i = offset; i < offset + count; i++) {
+            buffer[i] = generateEmail(currentLevel, rng);
+        }
+    }
+    
+    /**
+     * Generate a number of emails and pass each one to a sink
+     */
+    public void generateEmails(int currentLevel, int count, SplittableRandom rng, Consumer<? super Email> sink) {
+        for (int i = 0; i < count; i++) {
+            sink.accept(generateEmail(currentLevel, rng));
+        }
+    }
+    
+    /**
+     * Fill a whole buffer with generated emails using every core.
+     * The buffer is split into ranges that each get their own split of the
+     * random stream, so the result only depends on the seed of rng.
+     */
+    public void generateEmailsParallel(int currentLevel, Email[] buffer, SplittableRandom rng) {
+        ForkJoinPool.commonPool().invoke(new GenerateBatchTask(currentLevel, buffer, 0, buffer.length, rng));
+    }
+    
+    /**
+     * Fork/join task that generates one range of a parallel batch
+     */
+    private class GenerateBatchTask extends RecursiveAction {
+        private final int currentLevel;
+        private final Email[] buffer;
+        private final int from;
+        private final int to;
+        private final SplittableRandom rng;
+        
+        GenerateBatchTask(int currentLevel, Email[] buffer, int from, int to, SplittableRandom rng) {
+            this.currentLevel = currentLevel;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.rng = rng;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_BATCH_THRESHOLD) {
+                generateEmails(currentLevel, buffer, from, to - from, rng);
+                return;
             }
+            // Split the stream before forking so the split tree never depends on timing
+            int mid = (from + to) >>> 1;
+            SplittableRandom rightRng = rng.split();
+            invokeAll(new GenerateBatchTask(currentLevel, buffer, from, mid, rng),
+                      new GenerateBatchTask(currentLevel, buffer, mid, to, rightRng));
         }
     }
     
+    /**
+     * Determine which type of email to generate based on the current level
+     */
+    private Email.EmailType determineEmailType(int currentLevel, RandomGenerator random) {
+        // Higher levels have more spam and special events; the per-level
+        // distributions live in EmailTypeSampler's band table
+        return EmailTypeSampler.forLevel(currentLevel).sample(random.nextDouble());
+    }
+    
     /**
      * Add an email to the inbox
      */
     public boolean addToInbox(Email email) {
-        if (getCurrentInboxSize() + email.getSize() <= inboxCapacity) {
-            inbox.add(email);
+        if (email.getId() == 0) {
+            email.setId(nextEmailId.incrementAndGet());
+        }
+        
+        // Space is reserved atomically, so concurrent producers can't overshoot capacity
+        if (!inbox.tryAdd(email, getChargedUnits(email), capacityUnits)) {
+            return false; // Inbox full
+        }
+        
+        SearchIndex index = searchIndex;
+        if (index != null) {
+            index.add(email);
+        }
+        UrgencyQueue queue = urgencyQueue;
+        if (queue != null) {
+            queue.add(email);
+        }
+        
+        // A removeFromInbox that ran before the adds above couldn't take the
+        // email out of the index and queue, so take it out here instead
+        if (!inbox.contains(email)) {
+            if (index != null) {
+                index.remove(email);
+            }
+            if (queue != null) {
+                queue.remove(email);
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Let go of an email that never made it into the inbox, such as one the
+     * spam filter removed, so its attachment payload stops taking up space
+     */
+    public void discardEmail(Email email) {
+        AttachmentStore attachments = attachmentStore;
+        if (attachments != null && email.getAttachment() != null) {
+            attachments.release(email.getAttachment());
+        }
+    }
+    
+    /**
+     * Remove an email from the inbox.
+     * Returns false if it wasn't there, such as when another thread removed it first.
+     */
+    public boolean removeFromInbox(Email email) {
+        if (inbox.remove(email)) {
+            AttachmentStore attachments = attachmentStore;
+            if (attachments != null && email.getAttachment() != null) {
+                attachments.release(email.getAttachment());
+            }
+            SearchIndex index = searchIndex;
+            if (index != null) {
+                index.remove(email);
+            }
+            UrgencyQueue queue = urgencyQueue;
+            if (queue != null) {
+                queue.remove(email);
+            }
             return true;
         }
-        return false; // Inbox full
+        return false;
+    }
+    
+    /**
+     * Get up to n of the most pressing emails: urgent ones first, then by
+     * response deadline, then oldest first.
+     * Returns an empty list unless priority ordering is on.
+     */
+    public List<Email> getMostPressing(int n) {
+        UrgencyQueue queue = urgencyQueue;
+        if (queue == null) {
+            return new ArrayList<>();
+        }
+        return queue.topN(n);
+    }
+    
+    /**
+     * Move an email to its new place in the priority order after its
+     * urgency or deadline changed
+     */
+    public void updatePriority(Email email) {
+        inbox.refresh(email);
+        UrgencyQueue queue = urgencyQueue;
+        if (queue != null) {
+            queue.rekey(email);
+        }
+    }
+    
+    /**
+     * Turn priority ordering on or off; it starts off. Turning it on queues
+     * the emails already in the inbox.
+     */
+    public synchronized void setPriorityOrderEnabled(boolean enabled) {
+        if (!enabled) {
+            urgencyQueue = null;
+        } else if (urgencyQueue == null) {
+            UrgencyQueue queue = new UrgencyQueue();
+            for (Email email : inbox) {
+                queue.add(email);
+            }
+            urgencyQueue = queue;
+        }
     }
     
     /**
-     * Remove an email from the inbox
+     * Search the inbox by sender, subject and content.
+     * Returns up to maxResults emails, best match first, or none unless
+     * search is on.
      */
-    public void removeFromInbox(Email email) {
-        inbox.remove(email);
+    public List<Email> searchInbox(String query, int maxResults) {
+        SearchIndex index = searchIndex;
+        if (index == null) {
+            return new ArrayList<>();
+        }
+        List<Email> results = index.search(query, maxResults);
+        results.removeIf(email -> !inbox.contains(email)); // Removed while the query ran
+        return results;
+    }
+    
+    /**
+     * Turn the search index on or off; it starts off, and the Search
+     * Function upgrade turns it on. Turning it on indexes the emails already
+     * in the inbox.
+     */
+    public synchronized void setSearchEnabled(boolean enabled) {
+        if (!enabled) {
+            searchIndex = null;
+        } else if (searchIndex == null) {
+            SearchIndex index = new SearchIndex();
+            for (Email email : inbox) {
+                index.add(email);
+            }
+            searchIndex = index;
+        }
+    }
+    
+    /**
+     * Calculate the space an email takes up in fixed-point units.
+     * Stored attachments are charged by their compressed bytes.
+     */
+    private int getChargedUnits(Email email) {
+        AttachmentStore.Attachment attachment = email.getAttachment();
+        if (attachment != null) {
+            return (int) (((long) attachment.getStoredLength() * SIZE_UNIT + SLOT_BYTES - 1) / SLOT_BYTES);
+        }
+        return email.getSize() * SIZE_UNIT;
     }
     
     /**
      * Get the current size of all emails in the inbox
      */
     public int getCurrentInboxSize() {
-        int totalSize = 0;
-        for (Email email : inbox) {
-            totalSize += email.getSize();
-        }
-        return totalSize;
+        // Round up so a partly used slot still shows as used
+        return (int) ((inbox.getOccupiedUnits() + SIZE_UNIT - 1) / SIZE_UNIT);
     }
     
     /**
      * Check if inbox is at capacity
      */
     public boolean isInboxFull() {
-        return getCurrentInboxSize() >= inboxCapacity;
+        return inbox.getOccupiedUnits() >= capacityUnits;
     }
     
     /**
-     * Get all emails in the inbox
+     * Get a snapshot of all emails in the inbox, in arrival order
      */
     public List<Email> getInbox() {
-        return inbox;
+        return inbox.snapshot();
+    }
+    
+    /**
+     * Check if an email is still in the inbox
+     */
+    public boolean isInInbox(Email email) {
+        return inbox.contains(email);
+    }
+    
+    /**
+     * Get the number of emails in the inbox
+     */
+    public int getInboxEmailCount() {
+        return inbox.size();
+    }
+    
+    /**
+     * Count the spam emails waiting in the inbox
+     */
+    public int countSpamInInbox() {
+        return inbox.countSpam();
+    }
+    
+    /**
+     * Get the urgent email that has waited longest, or null if there is none
+     */
+    public Email getOldestUrgentEmail() {
+        return inbox.findOldestUrgent();
+    }
+    
+    /**
+     * Get the id given to the most recent email
+     */
+    long getLastEmailId() {
+        return nextEmailId.get();
+    }
+    
+    /**
+     * Carry on numbering emails after a given id, such as after a resumed game
+     */
+    void setLastEmailId(long id) {
+        nextEmailId.set(id);
+    }
+    
+    /**
+     * Get the clock used to timestamp emails
+     */
+    public GameClock getClock() {
+        return clock;
     }
     
     /**
@@ -255,14 +477,36 @@ public class EmailSystem {
     /**
      * Set inbox capacity (for upgrades)
      */
-    public void setInboxCapacity(int inboxCapacity) {
+    public synchronized void setInboxCapacity(int inboxCapacity) {
         this.inboxCapacity = inboxCapacity;
+        capacityUnits = (long) inboxCapacity * SIZE_UNIT;
     }
     
     /**
      * Increase inbox capacity by the specified amount
      */
-    public void increaseInboxCapacity(int amount) {
+    public synchronized void increaseInboxCapacity(int amount) {
         inboxCapacity += amount;
+        capacityUnits = (long) inboxCapacity * SIZE_UNIT;
+    }
+    
+    /**
+     * Set where large attachment payloads are kept, or null to charge
+     * them a flat slot without storing a payload
+     */
+    public void setAttachmentStore(AttachmentStore store) {
+        attachmentStore = store;
+    }
+    
+    public AttachmentStore getAttachmentStore() {
+        return attachmentStore;
+    }
+    
+    /**
+     * Set the Deflater level for new attachments (for the Attachment Compressor upgrade).
+     * Only affects attachments that arrive after the change.
+     */
+    public void setAttachmentCompressionLevel(int level) {
+        attachmentCompressionLevel = level;
     }
 }
\ No newline at end of file
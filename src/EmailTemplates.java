@@ -0,0 +1,117 @@
+package src;
+
+/**
+ * Precomputed table of the text used by generated emails.
+ * Every string is built and interned once, so generated emails only
+ * need to hold small sender and subject slot indexes into this table.
+ */
+public final class EmailTemplates {
+    // Shared sender and subject pools
+    private static final String[] WORK_SENDERS = {"Boss", "Manager", "HR Dept", "IT Support", "Colleague"};
+    private static final String[] WORK_SUBJECTS = {"Project Update", "Meeting Request", "Report Due", "System Update", "Task Assignment"};
+
+    private static final String[] PERSONAL_SENDERS = {"Friend", "Family", "Spouse", "School", "Doctor"};
+    private static final String[] PERSONAL_SUBJECTS = {"Hello!", "Weekend Plans", "Important News", "Check-in", "Invitation"};
+
+    private static final String[] SPAM_SENDERS = {"Prize Dept", "Security Alert", "Account Service", "Lottery Win", "Unknown"};
+    private static final String[] SPAM_SUBJECTS = {"You Won!", "Account Alert", "Urgent Action Required", "Special Offer", "Security Warning"};
+
+    // Tables indexed by EmailType ordinal, then by slot.
+    // Content is indexed by sender slot since some bodies mention the sender.
+    private static final String[][] SENDERS = new String[Email.EmailType.values().length][];
+    private static final String[][] SUBJECTS = new String[Email.EmailType.values().length][];
+    private static final String[][] CONTENTS = new String[Email.EmailType.values().length][];
+
+    static {
+        define(Email.EmailType.LEGITIMATE_WORK, WORK_SENDERS, WORK_SUBJECTS,
+            "This is a work-related email requiring your attention.");
+
+        String[] personalContent = new String[PERSONAL_SENDERS.length];
+        for (int i = 0; i < PERSONAL_SENDERS.length; i++) {
+            personalContent[i] = "This is a personal email from " + PERSONAL_SENDERS[i] + ".";
+        }
+        define(Email.EmailType.LEGITIMATE_PERSONAL, PERSONAL_SENDERS, PERSONAL_SUBJECTS, personalContent);
+
+        define(Email.EmailType.LEGITIMATE_SUBSCRIPTION, new String[]{"Newsletter"}, new String[]{"Your Weekly Update"},
+            "Thank you for subscribing to our newsletter.");
+        define(Email.EmailType.LEGITIMATE_ACCOUNT, new String[]{"Account Services"}, new String[]{"Account Notification"},
+            "This is a notification about your account.");
+        define(Email.EmailType.SPAM_PHISHING, SPAM_SENDERS, SPAM_SUBJECTS,
+            "Please click this link to claim your prize!");
+        define(Email.EmailType.SPAM_PROMOTIONAL, new String[]{"Marketing"}, new String[]{"Special Offer Inside!"},
+            "Limited time offer! Buy now!");
+        define(Email.EmailType.SPAM_SCAM, new String[]{"Prince"}, new String[]{"Business Proposal"},
+            "I need your help to transfer $10,000,000...");
+        define(Email.EmailType.SPAM_MALWARE, new String[]{"System Admin"}, new String[]{"Security Update Required"},
+            "Please download this attachment immediately.");
+
+        String[] urgentSubjects = new String[WORK_SUBJECTS.length];
+        for (int i = 0; i < WORK_SUBJECTS.length; i++) {
+            urgentSubjects[i] = "URGENT: " + WORK_SUBJECTS[i];
+        }
+        define(Email.EmailType.URGENT, WORK_SENDERS, urgentSubjects,
+            "This requires your immediate attention!");
+
+        define(Email.EmailType.CHAIN, new String[]{"Multiple Recipients"}, new String[]{"Re: Re: Re: Important Discussion"},
+            "This is part of an ongoing discussion thread.");
+        define(Email.EmailType.LARGE_ATTACHMENT, WORK_SENDERS, new String[]{"Files Attached"},
+            "I've attached the requested files.");
+    }
+
+    private EmailTemplates() {
+    }
+
+    /**
+     * Register a type whose content is the same for every sender
+     */
+    private static void define(Email.EmailType type, String[] senders, String[] subjects, String content) {
+        String[] contents = new String[senders.length];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = content;
+        }
+        define(type, senders, subjects, contents);
+    }
+
+    /**
+     * Register a type with per-sender content
+     */
+    private static void define(Email.EmailType type, String[] senders, String[] subjects, String[] contents) {
+        SENDERS[type.ordinal()] = intern(senders);
+        SUBJECTS[type.ordinal()] = intern(subjects);
+        CONTENTS[type.ordinal()] = intern(contents);
+    }
+
+    private static String[] intern(String[] values) {
+        String[] interned = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            interned[i] = values[i].intern();
+        }
+        return interned;
+    }
+
+    /**
+     * Get the number of sender slots for a type
+     */
+    public static int getSenderCount(Email.EmailType type) {
+        return SENDERS[type.ordinal()].length;
+    }
+
+    /**
+     * Get the number of subject slots for a type
+     */
+    public static int getSubjectCount(Email.EmailType type) {
+        return SUBJECTS[type.ordinal()].length;
+    }
+
+    public static String getSender(Email.EmailType type, int senderSlot) {
+        return SENDERS[type.ordinal()][senderSlot];
+    }
+
+    public static String getSubject(Email.EmailType type, int subjectSlot) {
+        return SUBJECTS[type.ordinal()][subjectSlot];
+    }
+
+    public static String getContent(Email.EmailType type, int senderSlot) {
+        return CONTENTS[type.ordinal()][senderSlot];
+    }
+}
@@ -0,0 +1,141 @@
+package src;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Picks email types from a per-level distribution in constant time.
+ * Each level band is compiled once into a Walker alias table, so a sample
+ * takes a single uniform draw and one comparison.
+ */
+public final class EmailTypeSampler {
+    // Level bands: the highest level each band covers and its type weights,
+    // in EmailType ordinal order. New bands only need a new row here.
+    private static final int[] BAND_MAX_LEVEL = {3, 6, Integer.MAX_VALUE};
+    private static final double[][] BAND_WEIGHTS = {
+        // Early levels - 80% legitimate, 20% spam
+        {
+            0.8 * 0.4, 0.8 * 0.3, 0.8 * 0.2, 0.8 * 0.1,  // work, personal, subscription, account
+            0.2 * 0.3, 0.2 * 0.4, 0.2 * 0.2, 0.2 * 0.1,  // phishing, promotional, scam, malware
+            0.0, 0.0, 0.0                                // urgent, chain, large attachment
+        },
+        // Mid levels - 50% legitimate, 30% spam, some special events
+        {
+            0.5 * 0.3, 0.5 * 0.3, 0.5 * 0.2, 0.5 * 0.2,
+            0.3 * 0.3, 0.3 * 0.3, 0.3 * 0.2, 0.3 * 0.2,
+            0.1, 0.0, 0.1
+        },
+        // Higher levels - 40% legitimate, 25% spam, 35% special events
+        {
+            0.4 * 0.25, 0.4 * 0.25, 0.4 * 0.25, 0.4 * 0.25,
+            0.25 * 0.25, 0.25 * 0.25, 0.25 * 0.25, 0.25 * 0.25,
+            0.15, 0.1, 0.1
+        }
+    };
+
+    private static final Email.EmailType[] TYPES = Email.EmailType.values();
+
+    private static final EmailTypeSampler[] BANDS = new EmailTypeSampler[BAND_WEIGHTS.length];
+
+    // Samplers cached by level so lookups skip the band search
+    private static final int CACHED_LEVELS = 64;
+    private static final EmailTypeSampler[] LEVEL_CACHE = new EmailTypeSampler[CACHED_LEVELS];
+
+    static {
+        for (int i = 0; i < BAND_WEIGHTS.length; i++) {
+            BANDS[i] = new EmailTypeSampler(BAND_WEIGHTS[i]);
+        }
+        for (int level = 0; level < CACHED_LEVELS; level++) {
+            LEVEL_CACHE[level] = findBand(level);
+        }
+    }
+
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * Build an alias table from weights in EmailType ordinal order (Vose's method)
+     */
+    private EmailTypeSampler(double[] weights) {
+        int n = weights.length;
+        probability = new double[n];
+        alias = new int[n];
+
+        double total = 0;
+        for (double weight : weights) {
+            total += weight;
+        }
+
+        // Scale so the average column holds exactly 1.0
+        double[] scaled = new double[n];
+        Deque<Integer> small = new ArrayDeque<>();
+        Deque<Integer> large = new ArrayDeque<>();
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / total;
+            if (scaled[i] < 1.0) {
+                small.push(i);
+            } else {
+                large.push(i);
+            }
+        }
+
+        // Fill each under-full column with mass from an over-full one
+        while (!small.isEmpty() && !large.isEmpty()) {
+            int less = small.pop();
+            int more = large.pop();
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small.push(more);
+            } else {
+                large.push(more);
+            }
+        }
+
+        // Whatever is left is full up to rounding error
+        while (!large.isEmpty()) {
+            int i = large.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+        while (!small.isEmpty()) {
+            int i = small.pop();
+            probability[i] = 1.0;
+            alias[i] = i;
+        }
+    }
+
+    /**
+     * Get the sampler for a game level
+     */
+    public static EmailTypeSampler forLevel(int level) {
+        if (level >= 0 && level < CACHED_LEVELS) {
+            return LEVEL_CACHE[level];
+        }
+        return findBand(level);
+    }
+
+    private static EmailTypeSampler findBand(int level) {
+        for (int i = 0; i < BAND_MAX_LEVEL.length; i++) {
+            if (level <= BAND_MAX_LEVEL[i]) {
+                return BANDS[i];
+            }
+        }
+        return BANDS[BANDS.length - 1];
+    }
+
+    /**
+     * Pick an email type from one uniform draw in [0, 1).
+     * The integer part of u * n picks a column, the fraction decides
+     * between the column's own type and its alias.
+     */
+    public Email.EmailType sample(double u) {
+        double scaled = u * probability.length;
+        int column = (int) scaled;
+        if (column >= probability.length) {
+            column = probability.length - 1;
+        }
+        return scaled - column < probability[column] ? TYPES[column] : TYPES[alias[column]];
+    }
+}
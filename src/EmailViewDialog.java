@@ -184,13 +184,13 @@ public class EmailViewDialog extends JDialog {
         
         markSpamButton = Windows95Theme.createButton("Mark as Spam");
         markSpamButton.addActionListener(e -> {
-            gameManager.processEmailAction(email, "mark_spam");
+            gameManager.processEmailAction(email, EmailAction.MARK_SPAM);
             dispose();
         });
         
         deleteButton = Windows95Theme.createButton("Delete");
         deleteButton.addActionListener(e -> {
-            gameManager.processEmailAction(email, "delete");
+            gameManager.processEmailAction(email, EmailAction.DELETE);
             dispose();
         });
         
@@ -245,7 +245,7 @@ public class EmailViewDialog extends JDialog {
                         JOptionPane.INFORMATION_MESSAGE
                     );
                     
-                    gameManager.processEmailAction(email, "respond");
+                    gameManager.processEmailAction(email, EmailAction.RESPOND);
                     dispose();
                 }
             }
@@ -0,0 +1,85 @@
+package src;
+
+/**
+ * Game balance parameters: how many mistakes end the game, how fast emails
+ * arrive at each level, and how much upgrades cost. The defaults are the
+ * game's own; AutoPlayerBenchmark sweeps other values to tune them.
+ */
+public final class GameBalance {
+    /**
+     * The parameters the game ships with
+     */
+    public static final GameBalance DEFAULT = new GameBalance(5, 3, 10, 2, 1, 1.0);
+
+    private final int maxIncorrectDeletes;
+    private final int maxMissedCritical;
+    private final int arrivalBaseSeconds;
+    private final int arrivalMinSeconds;
+    private final int arrivalJitterSeconds;
+    private final double upgradeCostMultiplier;
+
+    /**
+     * Constructor for a parameter set. The delay between arrivals at level L
+     * is max(arrivalBaseSeconds - L, arrivalMinSeconds), plus or minus up to
+     * arrivalJitterSeconds, and never under a second.
+     */
+    public GameBalance(int maxIncorrectDeletes, int maxMissedCritical, int arrivalBaseSeconds,
+                       int arrivalMinSeconds, int arrivalJitterSeconds, double upgradeCostMultiplier) {
+        this.maxIncorrectDeletes = maxIncorrectDeletes;
+        this.maxMissedCritical = maxMissedCritical;
+        this.arrivalBaseSeconds = arrivalBaseSeconds;
+        this.arrivalMinSeconds = arrivalMinSeconds;
+        this.arrivalJitterSeconds = arrivalJitterSeconds;
+        this.upgradeCostMultiplier = upgradeCostMultiplier;
+    }
+
+    public GameBalance withMaxIncorrectDeletes(int maxIncorrectDeletes) {
+        return new GameBalance(maxIncorrectDeletes, maxMissedCritical, arrivalBaseSeconds, arrivalMinSeconds,
+                               arrivalJitterSeconds, upgradeCostMultiplier);
+    }
+
+    public GameBalance withArrivalDelay(int arrivalBaseSeconds, int arrivalMinSeconds) {
+        return new GameBalance(maxIncorrectDeletes, maxMissedCritical, arrivalBaseSeconds, arrivalMinSeconds,
+                               arrivalJitterSeconds, upgradeCostMultiplier);
+    }
+
+    public GameBalance withUpgradeCostMultiplier(double upgradeCostMultiplier) {
+        return new GameBalance(maxIncorrectDeletes, maxMissedCritical, arrivalBaseSeconds, arrivalMinSeconds,
+                               arrivalJitterSeconds, upgradeCostMultiplier);
+    }
+
+    public int getMaxIncorrectDeletes() {
+        return maxIncorrectDeletes;
+    }
+
+    public int getMaxMissedCritical() {
+        return maxMissedCritical;
+    }
+
+    /**
+     * Get the seconds between arrivals at a level, given a jitter roll
+     * from 0 to 2 * arrivalJitterSeconds
+     */
+    public int getArrivalDelaySeconds(int level, int jitterRoll) {
+        int baseDelaySeconds = Math.max(arrivalBaseSeconds - level, arrivalMinSeconds);
+        return Math.max(1, baseDelaySeconds + jitterRoll - arrivalJitterSeconds);
+    }
+
+    /**
+     * Get the number of values a jitter roll can take
+     */
+    public int getArrivalJitterRange() {
+        return 2 * arrivalJitterSeconds + 1;
+    }
+
+    public double getUpgradeCostMultiplier() {
+        return upgradeCostMultiplier;
+    }
+
+    @Override
+    public String toString() {
+        return "maxIncorrectDeletes=" + maxIncorrectDeletes + " maxMissedCritical=" + maxMissedCritical
+             + " arrival=max(" + arrivalBaseSeconds + "-level," + arrivalMinSeconds + ")+/-" + arrivalJitterSeconds
+             + "s upgradeCost=x" + upgradeCostMultiplier;
+    }
+}
@@ -0,0 +1,50 @@
+package src;
+
+import java.time.LocalDateTime;
+
+/**
+ * Source of time for the game.
+ * The system clock is used for normal play; a ManualGameClock can be
+ * injected instead so runs are reproducible or run faster than real time.
+ *
+ * Game code keeps primitive nanoTime() readings and only turns them into
+ * wall-clock times with toWallTime() when something needs to be displayed.
+ */
+public interface GameClock {
+    /**
+     * Clock backed by System.nanoTime(), anchored to the local wall clock
+     * when the game starts
+     */
+    GameClock SYSTEM = new GameClock() {
+        // Read the wall clock first; its first call is slow while zone data loads
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public LocalDateTime toWallTime(long nanoTime) {
+            return startTime.plusNanos(nanoTime - startNanos);
+        }
+    };
+
+    /**
+     * Get monotonic time in nanoseconds, for timestamps and measuring intervals
+     */
+    long nanoTime();
+
+    /**
+     * Convert a nanoTime() reading from this clock to wall-clock time
+     */
+    LocalDateTime toWallTime(long nanoTime);
+
+    /**
+     * Get the current wall-clock time
+     */
+    default LocalDateTime now() {
+        return toWallTime(nanoTime());
+    }
+}
@@ -0,0 +1,23 @@
+package src;
+
+/**
+ * Receives game events from GameManager.
+ * Calls come from the game loop thread (or whichever thread made the
+ * change), so UI implementations must hand them over to their own thread.
+ */
+public interface GameListener {
+    /**
+     * Game state changed: emails arrived or were handled, score changed, etc.
+     */
+    void stateChanged();
+
+    /**
+     * The player reached a new level
+     */
+    void levelUp(int level, int bonusCoins);
+
+    /**
+     * The game ended
+     */
+    void gameOver(String message, int finalScore, int finalLevel);
+}
@@ -1,66 +1,132 @@
 package src;
 
-import javax.swing.*;
+import java.util.Collection;
 import java.util.Random;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Controls game flow and level progression.
  * Manages difficulty scaling and win/lose conditions.
  */
 public class GameManager {
+    private static final Logger LOGGER = Logger.getLogger(GameManager.class.getName());
+    
     private Player player;
     private EmailSystem emailSystem;
     private UpgradeSystem upgradeSystem;
+    private SpamClassifier spamClassifier;
     
-    private boolean gameRunning;
-    private boolean gamePaused;
-    private int incorrectDeletesCount;
-    private int missedCriticalEmailsCount;
+    private volatile boolean gameRunning;
+    private volatile boolean gamePaused;
+    // Mistakes are counted from the UI thread (player actions) and the game
+    // loop (expired deadlines) alike
+    private final AtomicInteger incorrectDeletesCount;
+    private final AtomicInteger missedCriticalEmailsCount;
+    private final AtomicInteger filteredLegitimateCount; // Legitimate emails the Spam Filter removed
     private Random random;
     
-    // Game balance parameters
-    private static final int MAX_INCORRECT_DELETES = 5;
-    private static final int MAX_MISSED_CRITICAL = 3;
+    // Clock advanced by each tick in seeded mode, null for normal play
+    private ManualGameClock seededClock;
+    
+    // Game balance parameters: mistake limits and arrival delays
+    private GameBalance balance;
+    
+    // One long-lived thread runs the game loop at a fixed timestep.
+    // Each tick adds its time to an accumulator and an email arrives every
+    // time a whole arrival interval has built up, so the interval can change
+    // between ticks without rescheduling anything.
+    // Sessions hosted by a SessionManager are ticked by its shared timer
+    // instead and never create this thread.
+    static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private volatile ScheduledExecutorService scheduler;
+    private volatile long arrivalIntervalNanos;
+    private long arrivalAccumulatorNanos; // Only touched by whoever runs tick()
+    
+    // Response deadlines of urgent and chain emails, checked every tick.
+    // 512 buckets of one tick each cover 51.2 seconds per turn of the wheel.
+    // Deadlines run on game time, the clock minus the time spent paused,
+    // so a pause doesn't use up anyone's response window.
+    private static final int DEADLINE_WHEEL_SIZE = 512;
+    private final TimingWheel<Email> deadlines;
+    private long pausedNanos; // Guarded by this
+    private long pauseStartedNanos; // Guarded by this
     
-    // Scheduler for email generation
-    private ScheduledExecutorService scheduler;
+    // Receives game events, such as the UI; null when nobody is listening
+    private volatile GameListener listener;
     
-    // UI reference
-    private MainScreen mainScreen;
+    // Records arrivals, actions, upgrades and level-ups; null when not journaling
+    private volatile ActionJournal journal;
     
     /**
      * Constructor for the game manager
      */
     public GameManager(Player player, EmailSystem emailSystem, UpgradeSystem upgradeSystem) {
+        this(player, emailSystem, upgradeSystem, new Random(), null);
+    }
+    
+    /**
+     * Constructor for a seeded, reproducible game.
+     * Arrival delays and spam filter rolls come from the seed, and the clock
+     * (which should also be the email system's clock) is moved forward by
+     * each arrival delay instead of following real time.
+     */
+    public GameManager(Player player, EmailSystem emailSystem, UpgradeSystem upgradeSystem,
+                       long seed, ManualGameClock clock) {
+        this(player, emailSystem, upgradeSystem, new Random(seed), clock);
+    }
+    
+    private GameManager(Player player, EmailSystem emailSystem, UpgradeSystem upgradeSystem,
+                        Random random, ManualGameClock seededClock) {
         this.player = player;
         this.emailSystem = emailSystem;
         this.upgradeSystem = upgradeSystem;
+        this.random = random;
+        this.seededClock = seededClock;
+        spamClassifier = new SpamClassifier();
         
         gameRunning = false;
         gamePaused = false;
-        incorrectDeletesCount = 0;
-        missedCriticalEmailsCount = 0;
-        random = new Random();
-        
-        // Create scheduler for email generation
-        scheduler = Executors.newScheduledThreadPool(1);
+        incorrectDeletesCount = new AtomicInteger();
+        missedCriticalEmailsCount = new AtomicInteger();
+        filteredLegitimateCount = new AtomicInteger();
+        balance = GameBalance.DEFAULT;
+        deadlines = new TimingWheel<>(TICK_NANOS, DEADLINE_WHEEL_SIZE, emailSystem.getClock().nanoTime());
     }
     
     /**
-     * Set the main screen reference for UI updates
+     * Set the listener for game events, such as a SwingGameListener for the UI
      */
-    public void setMainScreen(MainScreen mainScreen) {
-        this.mainScreen = mainScreen;
+    public void setListener(GameListener listener) {
+        this.listener = listener;
         
         // Now that everything is initialized, we can update the UI
-        if (mainScreen != null) {
-            SwingUtilities.invokeLater(() -> {
-                mainScreen.updateUI();
-            });
-        }
+        notifyStateChanged();
+    }
+    
+    /**
+     * Set the game balance parameters. Call before the game starts.
+     */
+    public void setBalance(GameBalance balance) {
+        this.balance = balance;
+    }
+    
+    /**
+     * Get the game balance parameters
+     */
+    public GameBalance getBalance() {
+        return balance;
+    }
+    
+    /**
+     * Set the journal that records this game, or null to stop journaling
+     */
+    public void setJournal(ActionJournal journal) {
+        this.journal = journal;
     }
     
     /**
@@ -74,63 +140,219 @@ public class GameManager {
         gameRunning = true;
         gamePaused = false;
         
-        // Schedule email generation
-        // Rate depends on current level
-        scheduleEmailGeneration();
+        // First email arrives on the first tick
+        updateArrivalInterval();
+        arrivalAccumulatorNanos = arrivalIntervalNanos;
+        
+        // Create the game loop thread; it doesn't keep the JVM alive on its own
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "game-loop");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, 0, TICK_NANOS, TimeUnit.NANOSECONDS);
     }
     
     /**
-     * Schedule email generation at intervals appropriate for the current level
+     * Start the game without the game loop thread, for a driver that calls
+     * tick() or deliverEmail() itself, such as SessionManager or HeadlessSimulation
      */
-    private void scheduleEmailGeneration() {
-        // Calculate delay based on level
+    void startWithoutLoop() {
+        if (gameRunning) {
+            return;
+        }
+        gameRunning = true;
+        gamePaused = false;
+        updateArrivalInterval();
+        arrivalAccumulatorNanos = arrivalIntervalNanos;
+    }
+    
+    /**
+     * Get the time between email arrivals at the current level
+     */
+    long getArrivalIntervalNanos() {
+        return arrivalIntervalNanos;
+    }
+    
+    /**
+     * Work out the time between email arrivals for the current level
+     */
+    private void updateArrivalInterval() {
         // Higher levels have faster email arrival
-        int baseDelaySeconds = Math.max(10 - player.getLevel(), 2);
-        int randomVariation = random.nextInt(3) - 1; // -1 to +1
-        int delaySeconds = Math.max(1, baseDelaySeconds + randomVariation);
-        
-        scheduler.scheduleAtFixedRate(() -> {
-            if (!gamePaused && gameRunning) {
-                generateNewEmail();
-                checkInboxCapacity();
-                
-                // Update UI on EDT
-                SwingUtilities.invokeLater(() -> {
-                    if (mainScreen != null) {
-                        mainScreen.updateUI();
-                    }
-                });
-                
-                // Check level progression
-                if (player.checkLevelUp()) {
-                    advanceLevel();
-                }
+        int delaySeconds = balance.getArrivalDelaySeconds(player.getLevel(),
+                                                          random.nextInt(balance.getArrivalJitterRange()));
+        arrivalIntervalNanos = TimeUnit.SECONDS.toNanos(delaySeconds);
+    }
+    
+    /**
+     * Advance the game by one fixed timestep (TICK_NANOS).
+     * Must not be called concurrently for the same game.
+     */
+    void tick() {
+        if (!gameRunning || gamePaused) {
+            return;
+        }
+        try {
+            if (seededClock != null) {
+                seededClock.advance(TICK_NANOS);
             }
-        }, 0, delaySeconds, TimeUnit.SECONDS);
+            expireDeadlines();
+            
+            arrivalAccumulatorNanos += TICK_NANOS;
+            boolean changed = false;
+            while (gameRunning && arrivalAccumulatorNanos >= arrivalIntervalNanos) {
+                arrivalAccumulatorNanos -= arrivalIntervalNanos;
+                deliverEmail();
+                changed = true;
+            }
+            
+            if (changed) {
+                notifyStateChanged();
+            }
+        } catch (RuntimeException e) {
+            // A failed tick leaves the game in an unknown state, so end it
+            // rather than retry it every tick
+            LOGGER.log(Level.SEVERE, "Game loop tick failed", e);
+            gameOver("The game stopped after an internal error: " + e);
+        }
     }
     
     /**
-     * Generate a new email and add it to the inbox
+     * Handle one email arrival: generate, filter and deliver it, then check
+     * for a full inbox and level progression.
+     * Returns the email if it landed in the inbox, or null.
      */
-    private void generateNewEmail() {
+    Email deliverEmail() {
         Email newEmail = emailSystem.generateEmail(player.getLevel());
+        return deliverEmail(newEmail, spamClassifier.spamProbability(newEmail) >= player.getSpamFilterThreshold());
+    }
+    
+    /**
+     * Deliver a given email with a given spam filter decision, such as one
+     * read back from an ActionJournal
+     */
+    Email deliverEmail(Email newEmail, boolean filtered) {
+        ActionJournal current = journal;
+        if (current != null) {
+            current.recordArrival(newEmail, filtered);
+        }
+        
+        Email email = admitEmail(newEmail, filtered);
+        if (email != null && email.getResponseWindowSeconds() > 0) {
+            // The email just arrived, so its window starts now in game time
+            scheduleDeadline(email, getGameNanos() + TimeUnit.SECONDS.toNanos(email.getResponseWindowSeconds()));
+        }
+        checkInboxCapacity();
         
+        // Check level progression; the new interval applies from the next arrival
+        if (gameRunning && player.checkLevelUp()) {
+            advanceLevel();
+        }
+        return email;
+    }
+    
+    private void scheduleDeadline(Email email, long deadlineNanos) {
+        email.deadline = deadlines.schedule(email, deadlineNanos);
+        emailSystem.updatePriority(email); // Most pressing first goes by this deadline
+    }
+    
+    /**
+     * Fire the response deadlines that have passed in game time
+     */
+    void expireDeadlines() {
+        deadlines.advance(getGameNanos(), this::deadlineExpired);
+    }
+    
+    /**
+     * Get the game time: the email system's clock, less the time spent
+     * paused. It stands still while the game is paused.
+     */
+    private synchronized long getGameNanos() {
+        long now = gamePaused ? pauseStartedNanos : emailSystem.getClock().nanoTime();
+        return now - pausedNanos;
+    }
+    
+    /**
+     * Get how long an email has left to be handled, or -1 if it has no deadline
+     */
+    long getRemainingDeadlineNanos(Email email) {
+        TimingWheel.Timeout<Email> deadline = email.deadline;
+        return deadline == null ? -1 : Math.max(0, deadline.getDeadlineNanos() - getGameNanos());
+    }
+    
+    /**
+     * An email's response window ran out. A chain email left too long becomes
+     * urgent with a fresh window; an urgent email is lost and counts as missed.
+     */
+    private void deadlineExpired(Email email) {
+        email.deadline = null;
+        if (!gameRunning || !emailSystem.isInInbox(email)) {
+            return;
+        }
+        if (!email.isUrgent() && email.getType() == Email.EmailType.CHAIN) {
+            email.escalateToUrgent();
+            scheduleDeadline(email, getGameNanos() + TimeUnit.SECONDS.toNanos(email.getResponseWindowSeconds()));
+        } else {
+            // Only a miss if the player didn't take the email out just now
+            if (!emailSystem.removeFromInbox(email)) {
+                return;
+            }
+            player.deductPoints(15);
+            recordMissedCritical();
+        }
+        notifyStateChanged();
+    }
+    
+    /**
+     * Count a legitimate email thrown away and end the game with the given
+     * message if there were too many
+     */
+    private void recordIncorrectDelete(String gameOverMessage) {
+        if (incorrectDeletesCount.incrementAndGet() >= balance.getMaxIncorrectDeletes()) {
+            gameOver(gameOverMessage);
+        }
+    }
+    
+    /**
+     * Count a missed critical email and end the game if there were too many
+     */
+    private void recordMissedCritical() {
+        if (missedCriticalEmailsCount.incrementAndGet() >= balance.getMaxMissedCritical()) {
+            gameOver("You've missed too many critical emails! Game Over.");
+        }
+    }
+    
+    /**
+     * Add a new email to the inbox unless the spam filter caught it.
+     * Returns the email if it was added, or null.
+     */
+    private Email admitEmail(Email newEmail, boolean filtered) {
         // Check if spam filter catches this email
-        if (newEmail.isSpam() && random.nextDouble() < player.getSpamFilterChance()) {
-            // Auto-delete spam and award points
-            player.awardPoints(5);
-            return; // Don't add to inbox
+        if (filtered) {
+            // Auto-delete and award points if it really was spam. A legitimate
+            // email caught by the filter costs what the filter won, and an
+            // urgent one counts as a missed critical email.
+            emailSystem.discardEmail(newEmail);
+            if (newEmail.isSpam()) {
+                player.awardPoints(5);
+            } else {
+                filteredLegitimateCount.incrementAndGet();
+                player.deductPoints(5);
+                if (newEmail.isUrgent()) {
+                    recordMissedCritical();
+                }
+            }
+            return null; // Don't add to inbox
         }
         
         // Add to inbox if there's space
         if (!emailSystem.addToInbox(newEmail)) {
             // Inbox is full - game over
-            if (mainScreen != null) {
-                SwingUtilities.invokeLater(() -> {
-                    gameOver("Your inbox is full! Game Over.");
-                });
-            }
+            emailSystem.discardEmail(newEmail);
+            gameOver("Your inbox is full! Game Over.");
+            return null;
         }
+        return newEmail;
     }
     
     /**
@@ -138,88 +360,130 @@ public class GameManager {
      */
     private void checkInboxCapacity() {
         if (emailSystem.isInboxFull()) {
-            if (mainScreen != null) {
-                SwingUtilities.invokeLater(() -> {
-                    gameOver("Your inbox is full! Game Over.");
-                });
-            }
+            gameOver("Your inbox is full! Game Over.");
         }
     }
     
     /**
-     * Process player action on an email
+     * Process player action on an email, given by name ("respond",
+     * "delete", "mark_spam" or "ignore")
      */
     public void processEmailAction(Email email, String action) {
+        processEmailAction(email, EmailAction.fromName(action));
+    }
+    
+    /**
+     * Process player action on an email
+     */
+    public void processEmailAction(Email email, EmailAction action) {
         if (!gameRunning || gamePaused) {
             return;
         }
-        
-        if (action.equals("respond") && email.isLegitimate()) {
-            // Correct response to legitimate email
-            player.awardPoints(10);
-            emailSystem.removeFromInbox(email);
-        } else if (action.equals("delete") && email.isSpam()) {
-            // Correct deletion of spam
-            player.awardPoints(5);
-            emailSystem.removeFromInbox(email);
-        } else if (action.equals("mark_spam") && email.isSpam()) {
-            // Correctly identified spam
-            player.awardPoints(5);
-            emailSystem.removeFromInbox(email);
-        } else if (action.equals("mark_spam") && !email.isSpam()) {
-            // Incorrectly marked legitimate email as spam
-            player.deductPoints(15);
-            incorrectDeletesCount++;
-            emailSystem.removeFromInbox(email);
-            
-            // Check if too many legitimate emails incorrectly handled
-            if (incorrectDeletesCount >= MAX_INCORRECT_DELETES) {
-                if (mainScreen != null) {
-                    SwingUtilities.invokeLater(() -> {
-                        gameOver("You've marked too many legitimate emails as spam! Game Over.");
-                    });
-                }
+        if (applyAction(email, action)) {
+            // Update UI after action
+            notifyStateChanged();
+        }
+    }
+    
+    /**
+     * Apply the same action to many emails, such as a multi-selection in
+     * the inbox, in one pass with one state change notification.
+     * Emails no longer in the inbox are skipped, and the rest are skipped
+     * if the game ends part way. Returns the number of emails handled.
+     */
+    public int processEmailActions(Collection<Email> emails, EmailAction action) {
+        if (!gameRunning || gamePaused) {
+            return 0;
+        }
+        int handled = 0;
+        for (Email email : emails) {
+            if (!gameRunning) {
+                break;
+            }
+            if (applyAction(email, action)) {
+                handled++;
+            }
+        }
+        if (handled > 0) {
+            notifyStateChanged();
+        }
+        return handled;
+    }
+    
+    /**
+     * Score an action on an email and remove the email if the action
+     * dealt with it. Returns false if the email wasn't in the inbox.
+     */
+    private boolean applyAction(Email email, EmailAction action) {
+        if (action == EmailAction.IGNORE) {
+            // Ignored emails stay in the inbox and their deadline keeps running
+            if (!emailSystem.isInInbox(email)) {
+                return false;
             }
         } else {
-            // Incorrect action
-            player.deductPoints(15);
-            
-            if (action.equals("delete") && email.isLegitimate()) {
-                // Incorrectly deleted legitimate email
-                incorrectDeletesCount++;
-                
-                if (incorrectDeletesCount >= MAX_INCORRECT_DELETES) {
-                    if (mainScreen != null) {
-                        SwingUtilities.invokeLater(() -> {
-                            gameOver("You've deleted too many legitimate emails! Game Over.");
-                        });
-                    }
-                }
-            } else if (action.equals("ignore") && email.isUrgent()) {
-                // Missed critical email
-                missedCriticalEmailsCount++;
-                
-                if (missedCriticalEmailsCount >= MAX_MISSED_CRITICAL) {
-                    if (mainScreen != null) {
-                        SwingUtilities.invokeLater(() -> {
-                            gameOver("You've missed too many critical emails! Game Over.");
-                        });
-                    }
-                }
+            // Taking the email out of the inbox decides who deals with it: if
+            // its deadline expired first, the email is gone and it was missed
+            if (!emailSystem.removeFromInbox(email)) {
+                return false;
             }
-            
-            // For any other incorrect actions, just remove the email
-            if (!action.equals("ignore")) {
-                emailSystem.removeFromInbox(email);
+            TimingWheel.Timeout<Email> timeout = email.deadline;
+            if (timeout != null) {
+                deadlines.cancel(timeout);
+                email.deadline = null;
             }
         }
         
-        // Update UI after action
-        if (mainScreen != null) {
-            SwingUtilities.invokeLater(() -> {
-                mainScreen.updateUI();
-            });
+        ActionJournal current = journal;
+        if (current != null) {
+            current.recordAction(email, action);
+        }
+        
+        // Teach the spam filter from how the player labelled the email
+        if (action != EmailAction.IGNORE) {
+            spamClassifier.train(email, action.treatsAsSpam());
+        }
+        
+        switch (action) {
+            case RESPOND:
+                if (email.isLegitimate()) {
+                    // Correct response to legitimate email
+                    player.awardPoints(10);
+                } else {
+                    // Responding to spam
+                    player.deductPoints(15);
+                }
+                break;
+                
+            case DELETE:
+                if (email.isSpam()) {
+                    // Correct deletion of spam
+                    player.awardPoints(5);
+                } else {
+                    // Incorrectly deleted legitimate email
+                    player.deductPoints(15);
+                    recordIncorrectDelete("You've deleted too many legitimate emails! Game Over.");
+                }
+                break;
+                
+            case MARK_SPAM:
+                if (email.isSpam()) {
+                    // Correctly identified spam
+                    player.awardPoints(5);
+                } else {
+                    // Incorrectly marked legitimate email as spam
+                    player.deductPoints(15);
+                    recordIncorrectDelete("You've marked too many legitimate emails as spam! Game Over.");
+                }
+                break;
+                
+            case IGNORE:
+                // Ignoring is never right, and ignored emails stay in the inbox.
+                // An ignored urgent email counts as missed once its deadline
+                // runs out, so it isn't counted here too.
+                player.deductPoints(15);
+                break;
         }
+        return true;
     }
     
     /**
@@ -231,26 +495,22 @@ public class GameManager {
         // Award bonus coins for level completion
         player.awardCoins(player.getLevel() * 50);
         
-        // Recalibrate email generation rate
-        scheduler.shutdown();
-        scheduler = Executors.newScheduledThreadPool(1);
-        scheduleEmailGeneration();
+        ActionJournal current = journal;
+        if (current != null) {
+            current.recordLevelUp(player.getLevel(), player.getScore());
+        }
+        
+        // Recalibrate email generation rate; the loop picks it up next tick
+        updateArrivalInterval();
         
         // Update inbox capacity based on upgrade
         int inboxCapacityUpgradeLevel = player.getUpgradeLevel(UpgradeType.INBOX_CAPACITY);
         emailSystem.setInboxCapacity(20 + (inboxCapacityUpgradeLevel * 10));
         
         // Notify player of level up
-        if (mainScreen != null) {
-            SwingUtilities.invokeLater(() -> {
-                JOptionPane.showMessageDialog(mainScreen,
-                    "Congratulations! You've reached Level " + player.getLevel() + "!\n" +
-                    "You've been awarded " + (player.getLevel() * 50) + " bonus coins.",
-                    "Level Up!",
-                    JOptionPane.INFORMATION_MESSAGE);
-                
-                mainScreen.updateUI();
-            });
+        GameListener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.levelUp(player.getLevel(), player.getLevel() * 50);
         }
     }
     
@@ -260,10 +520,21 @@ public class GameManager {
     public boolean purchaseUpgrade(UpgradeType type) {
         boolean success = upgradeSystem.purchaseUpgrade(player, type);
         
+        ActionJournal current = journal;
+        if (current != null) {
+            current.recordUpgrade(type, success);
+        }
+        
         if (success && type == UpgradeType.INBOX_CAPACITY) {
             // Update inbox capacity immediately
             int inboxCapacityUpgradeLevel = player.getUpgradeLevel(UpgradeType.INBOX_CAPACITY);
             emailSystem.setInboxCapacity(20 + (inboxCapacityUpgradeLevel * 10));
+        } else if (success && type == UpgradeType.ATTACHMENT_COMPRESSOR) {
+            // Newly arriving attachments are compressed harder
+            emailSystem.setAttachmentCompressionLevel(player.getAttachmentCompressionLevel());
+        } else if (success && type == UpgradeType.SEARCH_FUNCTION) {
+            // Only build the search index once the player can search
+            emailSystem.setSearchEnabled(true);
         }
         
         return success;
@@ -272,30 +543,111 @@ public class GameManager {
     /**
      * Pause the game
      */
-    public void pauseGame() {
-        gamePaused = true;
+    public synchronized void pauseGame() {
+        if (!gamePaused) {
+            pauseStartedNanos = emailSystem.getClock().nanoTime();
+            gamePaused = true;
+            
+            ActionJournal current = journal;
+            if (current != null) {
+                current.recordPause(pauseStartedNanos);
+            }
+        }
     }
     
     /**
-     * Resume the game
+     * Resume the game. The time spent paused doesn't count against any
+     * response deadline.
      */
-    public void resumeGame() {
-        gamePaused = false;
+    public synchronized void resumeGame() {
+        if (gamePaused) {
+            long now = emailSystem.getClock().nanoTime();
+            pausedNanos += now - pauseStartedNanos;
+            gamePaused = false;
+            
+            ActionJournal current = journal;
+            if (current != null) {
+                current.recordResume(now);
+            }
+        }
     }
     
     /**
      * End the game
      */
     public void gameOver(String message) {
-        gameRunning = false;
-        scheduler.shutdownNow();
+        synchronized (this) {
+            if (!gameRunning) {
+                return; // Already over
+            }
+            gameRunning = false;
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        
+        // Make sure the whole game is on disk before anyone reads the journal
+        ActionJournal currentJournal = journal;
+        if (currentJournal != null) {
+            currentJournal.recordGameOver(player.getScore());
+            currentJournal.flush();
+        }
         
-        JOptionPane.showMessageDialog(mainScreen,
-            message + "\n\n" +
-            "Final Score: " + player.getScore() + "\n" +
-            "Final Level: " + player.getLevel(),
-            "Game Over",
-            JOptionPane.INFORMATION_MESSAGE);
+        GameListener current = listener;
+        if (current != null) {
+            current.gameOver(message, player.getScore(), player.getLevel());
+        }
+    }
+    
+    private void notifyStateChanged() {
+        GameListener current = listener;
+        if (current != null) {
+            current.stateChanged();
+        }
+    }
+    
+    /**
+     * Get the number of legitimate emails deleted or marked as spam
+     */
+    int getIncorrectDeletesCount() {
+        return incorrectDeletesCount.get();
+    }
+    
+    /**
+     * Get the number of critical emails missed
+     */
+    int getMissedCriticalEmailsCount() {
+        return missedCriticalEmailsCount.get();
+    }
+    
+    /**
+     * Get the number of legitimate emails the Spam Filter removed
+     */
+    int getFilteredLegitimateCount() {
+        return filteredLegitimateCount.get();
+    }
+    
+    /**
+     * Put back the mistake counters of a saved game, before it starts
+     */
+    void restoreCounters(int incorrectDeletes, int missedCriticalEmails) {
+        incorrectDeletesCount.set(incorrectDeletes);
+        missedCriticalEmailsCount.set(missedCriticalEmails);
+    }
+    
+    /**
+     * Put a saved email back in the inbox with the time it had left to be
+     * handled, or -1 if it has no deadline.
+     * Returns false if it didn't fit.
+     */
+    boolean restoreEmail(Email email, long remainingNanos) {
+        if (!emailSystem.addToInbox(email)) {
+            return false;
+        }
+        if (remainingNanos >= 0) {
+            scheduleDeadline(email, getGameNanos() + remainingNanos);
+        }
+        return true;
     }
     
     /**
@@ -312,6 +664,13 @@ public class GameManager {
         return emailSystem;
     }
     
+    /**
+     * Get the spam classifier used by the Spam Filter upgrade
+     */
+    public SpamClassifier getSpamClassifier() {
+        return spamClassifier;
+    }
+    
     /**
      * Get the upgrade system
      */
@@ -0,0 +1,266 @@
+package src;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Saves a game to a compact binary file and resumes it: the Player, the
+ * GameManager mistake counters, what the spam filter has learned, and the
+ * EmailSystem inbox with each email's age, remaining response time and
+ * attachment payload.
+ *
+ * A save is written to a temporary file, forced to disk and then moved over
+ * the old save in one step, so a crash leaves either the old save or the
+ * new one. Loading reads the file into memory and closes it, so nothing
+ * keeps the save open and the next save can replace it; the bodies of
+ * emails with their own text are kept as bytes until they are opened.
+ *
+ * Enums are saved by ordinal, so reordering EmailType or UpgradeType needs
+ * a new VERSION.
+ */
+public final class GameSnapshot {
+    private static final int MAGIC = 0x45445331; // "EDS1"
+    private static final int VERSION = 2;
+
+    // Email record flags
+    private static final int URGENT_FLAG = 1;
+    private static final int FULL_TEXT_FLAG = 2;
+    private static final int ATTACHMENT_FLAG = 4;
+    private static final int COMPRESSED_FLAG = 8;
+
+    private static final Email.EmailType[] TYPES = Email.EmailType.values();
+    private static final UpgradeType[] UPGRADES = UpgradeType.values();
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Save a game, replacing any earlier save in the same file.
+     * The game should be paused so the inbox doesn't change while it is written.
+     */
+    public static void save(GameManager gameManager, Path path) throws IOException {
+        Player player = gameManager.getPlayer();
+        EmailSystem emailSystem = gameManager.getEmailSystem();
+        AttachmentStore attachments = emailSystem.getAttachmentStore();
+        List<Email> inbox = emailSystem.getInbox();
+        long now = emailSystem.getClock().nanoTime();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            // Player
+            out.writeInt(player.getScore());
+            out.writeInt(player.getCoins());
+            out.writeInt(player.getLevel());
+            out.writeInt(player.getConsecutiveCorrectActions());
+            out.writeInt(UPGRADES.length);
+            for (UpgradeType type : UPGRADES) {
+                out.writeInt(player.getUpgradeLevel(type));
+            }
+
+            // GameManager and EmailSystem
+            out.writeInt(gameManager.getIncorrectDeletesCount());
+            out.writeInt(gameManager.getMissedCriticalEmailsCount());
+            out.writeInt(emailSystem.getInboxCapacity());
+            out.writeLong(emailSystem.getLastEmailId());
+
+            // Spam filter training
+            gameManager.getSpamClassifier().writeTo(out);
+
+            // Inbox, in arrival order
+            out.writeInt(inbox.size());
+            ByteBuffer payload = null;
+            for (Email email : inbox) {
+                AttachmentStore.Attachment attachment = attachments != null ? email.getAttachment() : null;
+                boolean fullText = email.getSenderSlot() == Email.NO_TEMPLATE;
+                int flags = (email.isUrgent() ? URGENT_FLAG : 0) | (fullText ? FULL_TEXT_FLAG : 0);
+                if (attachment != null) {
+                    flags |= ATTACHMENT_FLAG | (attachment.isCompressed() ? COMPRESSED_FLAG : 0);
+                }
+
+                out.writeByte(email.getType().ordinal());
+                out.writeByte(flags);
+                out.writeByte(email.getSenderSlot());
+                out.writeByte(email.getSubjectSlot());
+                out.writeInt(email.getSize());
+                out.writeLong(email.getId());
+                out.writeLong(now - email.getReceivedNanos()); // Age
+                out.writeLong(gameManager.getRemainingDeadlineNanos(email));
+                if (fullText) {
+                    writeText(out, email.getSender());
+                    writeText(out, email.getSubject());
+                    writeText(out, email.scanContent());
+                }
+                if (attachment != null) {
+                    if (payload == null || payload.capacity() < attachment.getStoredLength()) {
+                        payload = ByteBuffer.allocate(Math.max(attachment.getStoredLength(), EmailSystem.SLOT_BYTES));
+                    }
+                    payload.clear();
+                    attachments.readStored(attachment, payload);
+                    out.writeInt(attachment.getRawLength());
+                    out.writeInt(attachment.getStoredLength());
+                    out.write(payload.array(), 0, attachment.getStoredLength());
+                }
+            }
+
+            // Checksum of everything before it, which isn't itself checksummed
+            out.flush();
+            int checksum = (int) crc.getValue();
+            out.writeInt(checksum);
+            out.flush();
+            channel.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory(path);
+    }
+
+    /**
+     * Load a save into a new game that hasn't started yet.
+     * Emails get the age and remaining response time they had when saved;
+     * the time the game was closed doesn't count.
+     */
+    public static void load(Path path, GameManager gameManager) throws IOException {
+        ByteBuffer data;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < 12 || fileSize > Integer.MAX_VALUE - 8) {
+                throw new IOException("Not a save file: " + path);
+            }
+            // Read rather than map: a mapped save stays open until it is
+            // garbage collected, and on some platforms can't be replaced meanwhile
+            data = ByteBuffer.allocate((int) fileSize);
+            while (data.hasRemaining()) {
+                if (channel.read(data) < 0) {
+                    throw new IOException("Save file is truncated: " + path);
+                }
+            }
+            data.flip();
+        }
+        int end = data.capacity() - 4;
+        CRC32 crc = new CRC32();
+        crc.update(data.duplicate().limit(end));
+        if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION) {
+            throw new IOException("Not a version " + VERSION + " save file: " + path);
+        }
+        if (data.getInt(end) != (int) crc.getValue()) {
+            throw new IOException("Save file is damaged: " + path);
+        }
+        data.position(8).limit(end);
+
+        // Player
+        Player player = gameManager.getPlayer();
+        int score = data.getInt();
+        int coins = data.getInt();
+        int level = data.getInt();
+        int consecutiveCorrectActions = data.getInt();
+        Map<UpgradeType, Integer> upgradeLevels = new EnumMap<>(UpgradeType.class);
+        int upgradeCount = data.getInt();
+        for (int i = 0; i < upgradeCount; i++) {
+            upgradeLevels.put(UPGRADES[i], data.getInt());
+        }
+        player.restore(score, coins, level, consecutiveCorrectActions, upgradeLevels);
+
+        // GameManager and EmailSystem
+        EmailSystem emailSystem = gameManager.getEmailSystem();
+        gameManager.restoreCounters(data.getInt(), data.getInt());
+        emailSystem.setInboxCapacity(data.getInt());
+        emailSystem.setLastEmailId(data.getLong());
+        emailSystem.setAttachmentCompressionLevel(player.getAttachmentCompressionLevel());
+        emailSystem.setSearchEnabled(player.getUpgradeLevel(UpgradeType.SEARCH_FUNCTION) > 0);
+
+        // Spam filter training
+        gameManager.getSpamClassifier().readFrom(data);
+
+        // Inbox
+        GameClock clock = emailSystem.getClock();
+        AttachmentStore attachments = emailSystem.getAttachmentStore();
+        long now = clock.nanoTime();
+        int emailCount = data.getInt();
+        for (int i = 0; i < emailCount; i++) {
+            Email.EmailType type = TYPES[data.get()];
+            int flags = data.get();
+            int senderSlot = data.get();
+            int subjectSlot = data.get();
+            int size = data.getInt();
+            long id = data.getLong();
+            long receivedNanos = now - data.getLong();
+            long remainingNanos = data.getLong();
+            boolean urgent = (flags & URGENT_FLAG) != 0;
+
+            Email email;
+            if ((flags & FULL_TEXT_FLAG) != 0) {
+                String sender = readText(data);
+                String subject = readText(data);
+                // Copy the body out so the email doesn't hold on to the whole save
+                byte[] body = new byte[data.getInt()];
+                data.get(body);
+                email = new Email(sender, subject, () -> new String(body, StandardCharsets.UTF_8),
+                                  size, type, urgent, clock, receivedNanos);
+            } else {
+                email = new Email(type, senderSlot, subjectSlot, size, urgent, clock, receivedNanos);
+            }
+            email.setId(id);
+
+            if ((flags & ATTACHMENT_FLAG) != 0) {
+                int rawLength = data.getInt();
+                int storedLength = data.getInt();
+                if (attachments != null) {
+                    email.setAttachment(attachments.restore(data.slice(data.position(), storedLength), rawLength,
+                                                            (flags & COMPRESSED_FLAG) != 0));
+                }
+                data.position(data.position() + storedLength);
+            }
+
+            if (!gameManager.restoreEmail(email, remainingNanos)) {
+                throw new IOException("Saved inbox doesn't fit its capacity: " + path);
+            }
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readText(ByteBuffer data) {
+        int length = data.getInt();
+        String text = StandardCharsets.UTF_8.decode(data.slice(data.position(), length)).toString();
+        data.position(data.position() + length);
+        return text;
+    }
+
+    /**
+     * Make the rename of a save durable. Not every platform can open a
+     * directory, in which case the rename is left to the file system.
+     */
+    private static void forceDirectory(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+}
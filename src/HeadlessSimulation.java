@@ -0,0 +1,361 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs complete games without a UI or real time.
+ * A virtual ManualGameClock jumps straight from one event to the next:
+ * email arrivals at the level's arrival interval, and player actions chosen
+ * by a PlayerPolicy. Whenever the player is free it may buy upgrades, then
+ * picks the next email and is busy until its action is done. Generation,
+ * spam filtering, scoring, upgrades and level-ups all go through the normal
+ * GameManager, so a run plays the same rules as the game, just thousands of
+ * times faster. No AWT or Swing classes are loaded.
+ */
+public class HeadlessSimulation {
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2000, 1, 1, 9, 0);
+
+    private static final int ARRIVAL = 0;
+    private static final int ACTION = 1;
+
+    /**
+     * Something that happens at a point in simulated time
+     */
+    private static final class Event implements Comparable<Event> {
+        final long time;
+        final long sequence; // Keeps events at the same time in the order they were scheduled
+        final int kind;
+        final Email email;
+        final EmailAction action;
+
+        Event(long time, long sequence, int kind, Email email, EmailAction action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.kind = kind;
+            this.email = email;
+            this.action = action;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (time != other.time) {
+                return Long.compare(time, other.time);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Outcome of one simulated game
+     */
+    public static final class Result {
+        private final long emailsGenerated;
+        private final long emailsHandled;
+        private final long emailsFiltered;
+        private final int legitimateFiltered;
+        private final long simulatedNanos;
+        private final long wallNanos;
+        private final int score;
+        private final int level;
+        private final String gameOverMessage;
+        private final int incorrectDeletes;
+        private final int missedCritical;
+        private final int upgradesBought;
+        private final long busyNanos;
+        private final long totalWaitNanos;
+        private final double peakInboxFill;
+
+        private Result(long emailsGenerated, long emailsHandled, long emailsFiltered, int legitimateFiltered,
+                       long simulatedNanos, long wallNanos, int score, int level, String gameOverMessage, int incorrectDeletes,
+                       int missedCritical, int upgradesBought, long busyNanos, long totalWaitNanos,
+                       double peakInboxFill) {
+            this.emailsGenerated = emailsGenerated;
+            this.emailsHandled = emailsHandled;
+            this.emailsFiltered = emailsFiltered;
+            this.legitimateFiltered = legitimateFiltered;
+            this.simulatedNanos = simulatedNanos;
+            this.wallNanos = wallNanos;
+            this.score = score;
+            this.level = level;
+            this.gameOverMessage = gameOverMessage;
+            this.incorrectDeletes = incorrectDeletes;
+            this.missedCritical = missedCritical;
+            this.upgradesBought = upgradesBought;
+            this.busyNanos = busyNanos;
+            this.totalWaitNanos = totalWaitNanos;
+            this.peakInboxFill = peakInboxFill;
+        }
+
+        public long getEmailsGenerated() {
+            return emailsGenerated;
+        }
+
+        public long getEmailsHandled() {
+            return emailsHandled;
+        }
+
+        /**
+         * Get the emails the spam filter removed before they reached the inbox
+         */
+        public long getEmailsFiltered() {
+            return emailsFiltered;
+        }
+
+        /**
+         * Get the legitimate emails the spam filter removed by mistake
+         */
+        public int getLegitimateFiltered() {
+            return legitimateFiltered;
+        }
+
+        public long getSimulatedNanos() {
+            return simulatedNanos;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Get why the game ended, or null if it ran out of simulated time
+         */
+        public String getGameOverMessage() {
+            return gameOverMessage;
+        }
+
+        public int getIncorrectDeletes() {
+            return incorrectDeletes;
+        }
+
+        public int getMissedCritical() {
+            return missedCritical;
+        }
+
+        public int getUpgradesBought() {
+            return upgradesBought;
+        }
+
+        /**
+         * Get the simulated time the player spent handling emails
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * Get the total time emails waited in the inbox before the player
+         * started on them
+         */
+        public long getTotalWaitNanos() {
+            return totalWaitNanos;
+        }
+
+        /**
+         * Get the fullest the inbox got, as a fraction of its capacity
+         */
+        public double getPeakInboxFill() {
+            return peakInboxFill;
+        }
+
+        /**
+         * Get simulated emails per second of real time
+         */
+        public double getEmailsPerSecond() {
+            return emailsGenerated * 1e9 / Math.max(1, wallNanos);
+        }
+    }
+
+    private final long seed;
+    private final PlayerPolicy policy;
+    private final long maxSimulatedNanos;
+    private final GameBalance balance;
+    private final String inboxStore;
+
+    /**
+     * Constructor for a simulation of one game.
+     * The same seed and policy always play out the same game.
+     */
+    public HeadlessSimulation(long seed, PlayerPolicy policy, long maxSimulatedNanos) {
+        this(seed, policy, maxSimulatedNanos, GameBalance.DEFAULT);
+    }
+
+    /**
+     * Constructor for a simulation of one game with the given balance parameters
+     */
+    public HeadlessSimulation(long seed, PlayerPolicy policy, long maxSimulatedNanos, GameBalance balance) {
+        this(seed, policy, maxSimulatedNanos, balance, "concurrent");
+    }
+
+    /**
+     * Constructor for a simulation of one game whose inbox is kept in the
+     * given kind of InboxStore (see InboxStore.named). The store doesn't
+     * change how the game plays out.
+     */
+    public HeadlessSimulation(long seed, PlayerPolicy policy, long maxSimulatedNanos, GameBalance balance,
+                              String inboxStore) {
+        this.seed = seed;
+        this.policy = policy;
+        this.maxSimulatedNanos = maxSimulatedNanos;
+        this.balance = balance;
+        this.inboxStore = inboxStore;
+    }
+
+    /**
+     * Play the game until it is over or the simulated time runs out
+     */
+    public Result run() {
+        long wallStart = System.nanoTime();
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ManualGameClock clock = new ManualGameClock(START_TIME);
+        EmailSystem emailSystem = new EmailSystem(seeds.nextLong(), clock, InboxStore.named(inboxStore));
+        emailSystem.setPriorityOrderEnabled(policy.usesPriorityOrder());
+        GameManager gameManager = new GameManager(new Player(), emailSystem,
+                                                  new UpgradeSystem(balance.getUpgradeCostMultiplier()),
+                                                  seeds.nextLong(), clock);
+        gameManager.setBalance(balance);
+        Player player = gameManager.getPlayer();
+        UpgradeSystem upgradeSystem = gameManager.getUpgradeSystem();
+        SplittableRandom playerRandom = seeds.split();
+
+        String[] gameOverMessage = new String[1];
+        gameManager.setListener(new GameListener() {
+            @Override
+            public void stateChanged() {
+            }
+
+            @Override
+            public void levelUp(int level, int bonusCoins) {
+            }
+
+            @Override
+            public void gameOver(String message, int finalScore, int finalLevel) {
+                gameOverMessage[0] = message;
+            }
+        });
+
+        PriorityQueue<Event> events = new PriorityQueue<>();
+        long sequence = 0;
+        boolean playerBusy = false; // The player handles one email at a time
+        long emailsGenerated = 0;
+        long emailsHandled = 0;
+        long emailsFiltered = 0;
+        int upgradesBought = 0;
+        long busyNanos = 0;
+        long totalWaitNanos = 0;
+        double peakInboxFill = 0;
+
+        gameManager.startWithoutLoop();
+        events.add(new Event(0, sequence++, ARRIVAL, null, null));
+        while (gameManager.isGameRunning() && !events.isEmpty()) {
+            Event event = events.poll();
+            if (event.time > maxSimulatedNanos) {
+                break;
+            }
+            clock.advance(event.time - clock.nanoTime());
+            gameManager.expireDeadlines();
+
+            if (event.kind == ARRIVAL) {
+                emailsGenerated++;
+                Email email = gameManager.deliverEmail();
+                if (email == null && gameManager.isGameRunning()) {
+                    emailsFiltered++;
+                }
+                peakInboxFill = Math.max(peakInboxFill, (double) emailSystem.getCurrentInboxSize()
+                                                        / emailSystem.getInboxCapacity());
+                long next = event.time + gameManager.getArrivalIntervalNanos();
+                events.add(new Event(next, sequence++, ARRIVAL, null, null));
+            } else {
+                playerBusy = false;
+                if (emailSystem.isInInbox(event.email)) {
+                    gameManager.processEmailAction(event.email, event.action);
+                    emailsHandled++;
+                }
+            }
+
+            if (!playerBusy && gameManager.isGameRunning()) {
+                // Shop between emails, then start on the next one
+                UpgradeType upgrade;
+                while ((upgrade = policy.chooseUpgrade(player, upgradeSystem, playerRandom)) != null
+                        && gameManager.purchaseUpgrade(upgrade)) {
+                    upgradesBought++;
+                }
+                Email email = policy.chooseEmail(emailSystem, playerRandom);
+                if (email != null) {
+                    EmailAction action = policy.chooseAction(email, playerRandom);
+                    long handlingNanos = getHandlingNanos(email, action, player, playerRandom);
+                    busyNanos += handlingNanos;
+                    totalWaitNanos += event.time - email.getReceivedNanos();
+                    events.add(new Event(event.time + handlingNanos, sequence++, ACTION, email, action));
+                    playerBusy = true;
+                }
+            }
+        }
+
+        return new Result(emailsGenerated, emailsHandled, emailsFiltered, gameManager.getFilteredLegitimateCount(),
+                          clock.nanoTime(), System.nanoTime() - wallStart, player.getScore(), player.getLevel(),
+                          gameOverMessage[0],
+                          gameManager.getIncorrectDeletesCount(), gameManager.getMissedCriticalEmailsCount(),
+                          upgradesBought, Math.min(busyNanos, clock.nanoTime()), totalWaitNanos, peakInboxFill);
+    }
+
+    /**
+     * Get how long the player takes over an email, sped up by the Response
+     * Speed upgrade and, for replies, the Quick Reply upgrade
+     */
+    private long getHandlingNanos(Email email, EmailAction action, Player player, SplittableRandom random) {
+        double modifier = player.getResponseSpeedModifier();
+        if (action == EmailAction.RESPOND) {
+            modifier *= Math.max(0.1, 1 - 0.1 * player.getUpgradeLevel(UpgradeType.QUICK_REPLY));
+        }
+        return Math.max(1, (long) (policy.getHandlingNanos(email, random) * modifier));
+    }
+
+    /**
+     * Run a batch of headless games and report throughput.
+     * Usage: HeadlessSimulation [games] [seed] [simulated hours per game] [concurrent|columnar|offheap]
+     */
+    public static void main(String[] args) {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        double hours = args.length > 2 ? Double.parseDouble(args[2]) : 2;
+        String inboxStore = args.length > 3 ? args[3] : "concurrent";
+        long maxSimulatedNanos = (long) (hours * TimeUnit.HOURS.toNanos(1));
+        PlayerPolicy policy = PlayerPolicy.accurate(TimeUnit.SECONDS.toNanos(3));
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        long emails = 0;
+        long simulatedNanos = 0;
+        long totalScore = 0;
+        int gamesOver = 0;
+        long wallStart = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            Result result = new HeadlessSimulation(seeds.nextLong(), policy, maxSimulatedNanos, GameBalance.DEFAULT,
+                                                   inboxStore).run();
+            emails += result.getEmailsGenerated();
+            simulatedNanos += result.getSimulatedNanos();
+            totalScore += result.getScore();
+            if (result.getGameOverMessage() != null) {
+                gamesOver++;
+            }
+        }
+        long wallNanos = System.nanoTime() - wallStart;
+
+        System.out.printf("Games: %d (%d ended by game over), inbox store: %s%n", games, gamesOver, inboxStore);
+        System.out.printf("Simulated emails: %d in %.2f s%n", emails, wallNanos / 1e9);
+        System.out.printf("Throughput: %.0f simulated emails/s%n", emails * 1e9 / wallNanos);
+        System.out.printf("Speed-up over real time: %.0fx%n", (double) simulatedNanos / wallNanos);
+        System.out.printf("Average score: %.1f%n", (double) totalScore / games);
+    }
+}
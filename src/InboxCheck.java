@@ -0,0 +1,158 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Self-check for concurrent inbox use. Several producer threads add emails
+ * to a small inbox through EmailSystem while remover threads take
+ * snapshots and remove emails from them, racing each other for the same
+ * emails, and a watcher samples the occupied space the whole time.
+ *
+ * Checks that capacity is never overshot, that every email is removed at
+ * most once, that the emails added less the emails removed are exactly the
+ * inbox afterwards, with no duplicates and the right occupied space, and
+ * that the inbox is empty once they are all removed. Emails are told apart
+ * by id, since some stores list new views of the same email.
+ * Exits with status 1 if any check fails.
+ */
+public class InboxCheck {
+    private static final int INBOX_CAPACITY = 2000;
+
+    private static int failures;
+
+    private static void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAILED: " + message);
+        }
+    }
+
+    /**
+     * Usage: InboxCheck [emails per producer] [producers] [removers] [concurrent|columnar|offheap]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int emailsPerProducer = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int producers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int removers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        String storeName = args.length > 3 ? args[3] : "concurrent";
+
+        InboxStore store = InboxStore.named(storeName);
+        EmailSystem emailSystem = new EmailSystem(1, new ManualGameClock(LocalDateTime.of(2000, 1, 1, 9, 0)), store);
+        emailSystem.setInboxCapacity(INBOX_CAPACITY);
+        long capacityUnits = (long) INBOX_CAPACITY * EmailSystem.SIZE_UNIT;
+
+        AtomicInteger added = new AtomicInteger();
+        AtomicInteger removed = new AtomicInteger();
+        AtomicInteger overshoots = new AtomicInteger();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        Set<Long> removedIds = new HashSet<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long wallStart = System.nanoTime();
+
+        Thread[] producerThreads = new Thread[producers];
+        SplittableRandom seeds = new SplittableRandom(1);
+        for (int p = 0; p < producers; p++) {
+            SplittableRandom rng = seeds.split();
+            producerThreads[p] = new Thread(() -> {
+                awaitStart(start);
+                emailSystem.generateEmails(5, emailsPerProducer, rng, email -> {
+                    if (emailSystem.addToInbox(email)) {
+                        added.incrementAndGet();
+                    }
+                });
+            }, "producer-" + p);
+        }
+
+        Thread[] removerThreads = new Thread[removers];
+        for (int r = 0; r < removers; r++) {
+            SplittableRandom rng = seeds.split();
+            removerThreads[r] = new Thread(() -> {
+                awaitStart(start);
+                while (producing.get()) {
+                    // Every remover works on the same snapshot order, so they race for the same emails
+                    for (Email email : emailSystem.getInbox()) {
+                        if (rng.nextInt(2) == 0 && emailSystem.removeFromInbox(email)) {
+                            removed.incrementAndGet();
+                            synchronized (removedIds) {
+                                check(removedIds.add(email.getId()), "email " + email.getId() + " was removed twice");
+                            }
+                        }
+                    }
+                }
+            }, "remover-" + r);
+        }
+
+        Thread watcher = new Thread(() -> {
+            awaitStart(start);
+            while (producing.get()) {
+                if (store.getOccupiedUnits() > capacityUnits) {
+                    overshoots.incrementAndGet();
+                }
+            }
+        }, "watcher");
+
+        for (Thread thread : producerThreads) {
+            thread.start();
+        }
+        for (Thread thread : removerThreads) {
+            thread.start();
+        }
+        watcher.start();
+        start.countDown();
+        for (Thread thread : producerThreads) {
+            thread.join();
+        }
+        producing.set(false);
+        for (Thread thread : removerThreads) {
+            thread.join();
+        }
+        watcher.join();
+        long wallNanos = System.nanoTime() - wallStart;
+
+        // What is left must be exactly what was added and not removed
+        List<Email> inbox = emailSystem.getInbox();
+        Set<Long> listedIds = new HashSet<>();
+        long units = 0;
+        for (Email email : inbox) {
+            check(listedIds.add(email.getId()), "email " + email.getId() + " is listed twice");
+            check(!removedIds.contains(email.getId()), "removed email " + email.getId() + " is still listed");
+            check(emailSystem.isInInbox(email), "listed email " + email.getId() + " is not in the inbox");
+            units += (long) email.getSize() * EmailSystem.SIZE_UNIT;
+        }
+        check(overshoots.get() == 0, "capacity was overshot " + overshoots.get() + " times");
+        check(inbox.size() == added.get() - removed.get(),
+              "inbox lists " + inbox.size() + " emails, expected " + (added.get() - removed.get()));
+        check(store.size() == inbox.size(), "inbox size " + store.size() + " but lists " + inbox.size());
+        check(store.getOccupiedUnits() == units,
+              "occupied units " + store.getOccupiedUnits() + " but listed emails take " + units);
+
+        int left = inbox.size();
+        for (Email email : inbox) {
+            check(emailSystem.removeFromInbox(email), "could not remove listed email " + email.getId());
+        }
+        check(store.size() == 0 && store.getOccupiedUnits() == 0 && emailSystem.getInbox().isEmpty(),
+              "inbox is not empty after removing every email");
+
+        System.out.printf("Store %s: %d added, %d removed concurrently, %d left, in %.2f s; %s%n",
+                          storeName, added.get(), removed.get(), left, wallNanos / 1e9,
+                          failures == 0 ? "all checks passed" : failures + " checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void awaitStart(CountDownLatch start) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package src;
+
+import java.util.List;
+
+/**
+ * Storage behind the EmailSystem inbox.
+ * Implementations reserve space atomically on add and release it on remove;
+ * occupancy is measured in EmailSystem fixed-point units.
+ */
+public interface InboxStore extends Iterable<Email> {
+    /**
+     * Reserve space for an email and add it to the store.
+     * Returns false without adding anything if the email does not fit.
+     */
+    boolean tryAdd(Email email, int units, long capacityUnits);
+
+    /**
+     * Remove an email and release its space.
+     * Returns false if the email was not in this store.
+     */
+    boolean remove(Email email);
+
+    /**
+     * Check if an email is currently in this store
+     */
+    boolean contains(Email email);
+
+    /**
+     * Get the space used by all emails, in EmailSystem fixed-point units
+     */
+    long getOccupiedUnits();
+
+    /**
+     * Get the number of emails in the store
+     */
+    int size();
+
+    /**
+     * Copy the current emails into a list, in arrival order
+     */
+    List<Email> snapshot();
+
+    /**
+     * Count the spam emails in the store
+     */
+    int countSpam();
+
+    /**
+     * Find the urgent email that arrived first, or null if there is none
+     */
+    Email findOldestUrgent();
+
+    /**
+     * Re-read the fields of a stored email that can change while it is in
+     * the inbox (its urgency). Stores that keep the Email object itself
+     * have nothing to do.
+     */
+    default void refresh(Email email) {
+    }
+
+    /**
+     * Create an empty store of the given kind: concurrent (the default
+     * ConcurrentInbox), columnar (ColumnarInboxStore) or offheap
+     * (OffHeapInboxStore)
+     */
+    static InboxStore named(String name) {
+        switch (name) {
+            case "concurrent":
+                return new ConcurrentInbox();
+            case "columnar":
+                return new ColumnarInboxStore();
+            case "offheap":
+                return new OffHeapInboxStore();
+            default:
+                throw new IllegalArgumentException("Unknown inbox store: " + name);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares the InboxStore implementations on one large inbox: the heap each
+ * keeps per email and how long the common inbox operations take. Every
+ * store is filled with the same seeded stream of emails, and the generator
+ * keeps no references of its own, so the heap growth is what the store holds.
+ */
+public class InboxStoreBenchmark {
+    private static final String[] STORES = {"concurrent", "columnar", "offheap"};
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void measure(String storeName, int emails, long seed) {
+        EmailSystem emailSystem = new EmailSystem(seed, new ManualGameClock(LocalDateTime.of(2000, 1, 1, 9, 0)),
+                                                  InboxStore.named(storeName));
+        emailSystem.setInboxCapacity(Integer.MAX_VALUE / EmailSystem.SIZE_UNIT);
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        for (int i = 0; i < emails; i++) {
+            emailSystem.addToInbox(emailSystem.generateEmail(1));
+        }
+        long addNanos = System.nanoTime() - start;
+        long retained = usedHeap() - heapBefore;
+
+        start = System.nanoTime();
+        int spam = emailSystem.countSpamInInbox();
+        long countNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        emailSystem.getOldestUrgentEmail();
+        long urgentNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<Email> inbox = emailSystem.getInbox();
+        long snapshotNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (Email email : inbox) {
+            emailSystem.removeFromInbox(email);
+        }
+        long removeNanos = System.nanoTime() - start;
+
+        System.out.printf("%-10s %7d B/email  add %6.0f ns  spam count %7.1f ms (%d)  oldest urgent %7.1f ms"
+                          + "  snapshot %7.1f ms  remove %6.0f ns%n",
+                          storeName, retained / emails, (double) addNanos / emails, countNanos / 1e6, spam,
+                          urgentNanos / 1e6, snapshotNanos / 1e6, (double) removeNanos / emails);
+    }
+
+    /**
+     * Usage: InboxStoreBenchmark [emails] [seed] [concurrent|columnar|offheap ...]
+     */
+    public static void main(String[] args) {
+        int emails = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        String[] stores = args.length > 2 ? Arrays.copyOfRange(args, 2, args.length) : STORES;
+
+        System.out.printf("Inbox of %d emails%n", emails);
+        for (String store : stores) {
+            measure(store, emails, seed);
+        }
+    }
+}
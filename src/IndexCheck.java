@@ -0,0 +1,236 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Self-check for the structures kept alongside the inbox.
+ *
+ * LongIntHashMap is run through random puts, increments and removals over
+ * a small key range, so removals keep shifting entries back along long
+ * probe chains, and compared with a HashMap after every step.
+ *
+ * The SearchIndex and UrgencyQueue are checked through EmailSystem with
+ * search and priority order on: producer threads add emails while other
+ * threads remove some and give others new deadlines. Afterwards the
+ * urgency queue must list exactly the inbox, most pressing first by each
+ * email's current deadline, every inbox email must be found by searching
+ * for its sender and subject, and no search may return an email that has
+ * left the inbox.
+ * Exits with status 1 if any check fails.
+ */
+public class IndexCheck {
+    private static final int INBOX_CAPACITY = 2000;
+
+    private static int failures;
+
+    private static synchronized void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            if (failures <= 20) {
+                System.out.println("FAILED: " + message);
+            }
+        }
+    }
+
+    /**
+     * Compare a LongIntHashMap with a HashMap over many random operations
+     */
+    private static void checkLongIntHashMap(int operations, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        LongIntHashMap map = new LongIntHashMap();
+        Map<Long, Integer> expected = new HashMap<>();
+        // Small range so the table stays crowded and removals shift long runs
+        long[] keys = new long[256];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = rng.nextLong();
+        }
+
+        for (int i = 0; i < operations; i++) {
+            long key = keys[rng.nextInt(keys.length)];
+            switch (rng.nextInt(4)) {
+                case 0:
+                    int value = rng.nextInt(1000);
+                    map.put(key, value);
+                    expected.put(key, value);
+                    break;
+                case 1:
+                    int sum = map.addTo(key, 1);
+                    expected.merge(key, 1, Integer::sum);
+                    check(sum == expected.get(key), "addTo returned " + sum + ", expected " + expected.get(key));
+                    break;
+                default:
+                    boolean removed = map.remove(key);
+                    check(removed == (expected.remove(key) != null), "remove returned " + removed);
+                    break;
+            }
+            if (i % 64 == 0 || i == operations - 1) {
+                check(map.size() == expected.size(), "size " + map.size() + ", expected " + expected.size());
+                for (long k : keys) {
+                    Integer value = expected.get(k);
+                    check(map.get(k, -1) == (value == null ? -1 : value) && map.containsKey(k) == (value != null),
+                          "wrong entry for key " + k + " after " + (i + 1) + " operations");
+                }
+            }
+        }
+    }
+
+    /**
+     * Add, remove and re-key emails from several threads, then compare the
+     * search index and urgency queue with the inbox
+     */
+    private static void checkInboxIndexes(int emailsPerProducer, int producers, int editors, long seed)
+            throws InterruptedException {
+        ManualGameClock clock = new ManualGameClock(LocalDateTime.of(2000, 1, 1, 9, 0));
+        EmailSystem emailSystem = new EmailSystem(seed, clock);
+        emailSystem.setInboxCapacity(INBOX_CAPACITY);
+        emailSystem.setSearchEnabled(true);
+        emailSystem.setPriorityOrderEnabled(true);
+        TimingWheel<Email> deadlines = new TimingWheel<>(GameManager.TICK_NANOS, 512, clock.nanoTime());
+
+        Set<Long> removedIds = new HashSet<>();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        SplittableRandom seeds = new SplittableRandom(seed);
+
+        Thread[] producerThreads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            SplittableRandom rng = seeds.split();
+            producerThreads[p] = new Thread(() -> {
+                awaitStart(start);
+                emailSystem.generateEmails(5, emailsPerProducer, rng, emailSystem::addToInbox);
+            }, "producer-" + p);
+        }
+
+        Thread[] editorThreads = new Thread[editors];
+        for (int e = 0; e < editors; e++) {
+            SplittableRandom rng = seeds.split();
+            editorThreads[e] = new Thread(() -> {
+                awaitStart(start);
+                while (producing.get()) {
+                    for (Email email : emailSystem.getInbox()) {
+                        int choice = rng.nextInt(4);
+                        if (choice == 0 && emailSystem.removeFromInbox(email)) {
+                            synchronized (removedIds) {
+                                removedIds.add(email.getId());
+                            }
+                        } else if (choice == 1) {
+                            // As GameManager does when it schedules or moves a deadline
+                            email.deadline = deadlines.schedule(email, rng.nextLong(1, 1_000_000_000_000L));
+                            emailSystem.updatePriority(email);
+                        }
+                    }
+                }
+            }, "editor-" + e);
+        }
+
+        for (Thread thread : producerThreads) {
+            thread.start();
+        }
+        for (Thread thread : editorThreads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : producerThreads) {
+            thread.join();
+        }
+        producing.set(false);
+        for (Thread thread : editorThreads) {
+            thread.join();
+        }
+
+        List<Email> inbox = emailSystem.getInbox();
+        Set<Long> inboxIds = new HashSet<>();
+        for (Email email : inbox) {
+            inboxIds.add(email.getId());
+        }
+
+        // The urgency queue holds exactly the inbox, in order of the current keys
+        List<Email> pressing = emailSystem.getMostPressing(Integer.MAX_VALUE);
+        Set<Long> queuedIds = new HashSet<>();
+        for (int i = 0; i < pressing.size(); i++) {
+            Email email = pressing.get(i);
+            check(queuedIds.add(email.getId()), "email " + email.getId() + " is queued twice");
+            check(inboxIds.contains(email.getId()), "queued email " + email.getId() + " is not in the inbox");
+            if (i > 0) {
+                check(comparePressing(pressing.get(i - 1), email) <= 0,
+                      "email " + email.getId() + " is queued after a less pressing one");
+            }
+        }
+        check(queuedIds.equals(inboxIds), "queue holds " + queuedIds.size() + " emails, inbox " + inboxIds.size());
+
+        // Every inbox email is found by its own words, and nothing else is found
+        for (Email email : inbox) {
+            List<Email> found = emailSystem.searchInbox(email.getSender() + " " + email.getSubject(), inbox.size());
+            boolean foundItself = false;
+            for (Email result : found) {
+                foundItself |= result.getId() == email.getId();
+                check(inboxIds.contains(result.getId()), "search found email " + result.getId() + " outside the inbox");
+            }
+            check(foundItself, "search doesn't find inbox email " + email.getId());
+        }
+
+        // Once the inbox is empty, nothing can be found or queued
+        for (Email email : inbox) {
+            emailSystem.removeFromInbox(email);
+        }
+        check(emailSystem.getMostPressing(Integer.MAX_VALUE).isEmpty(), "queue is not empty with an empty inbox");
+        for (Email email : inbox) {
+            check(emailSystem.searchInbox(email.getSender() + " " + email.getSubject(), 10).isEmpty(),
+                  "search finds emails in an empty inbox");
+        }
+
+        System.out.printf("Search index and urgency queue: %d emails left after %d removed, checked against the inbox%n",
+                          inbox.size(), removedIds.size());
+    }
+
+    /**
+     * Order two emails as UrgencyQueue does; negative when a is more pressing
+     */
+    private static int comparePressing(Email a, Email b) {
+        if (a.isUrgent() != b.isUrgent()) {
+            return a.isUrgent() ? -1 : 1;
+        }
+        int byDeadline = Long.compare(deadlineOf(a), deadlineOf(b));
+        return byDeadline != 0 ? byDeadline : Long.compare(a.getReceivedNanos(), b.getReceivedNanos());
+    }
+
+    private static long deadlineOf(Email email) {
+        TimingWheel.Timeout<Email> deadline = email.deadline;
+        return deadline != null ? deadline.getDeadlineNanos() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Usage: IndexCheck [map operations] [emails per producer] [producers] [editors]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int emailsPerProducer = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int producers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int editors = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+
+        checkLongIntHashMap(operations, 1);
+        System.out.printf("LongIntHashMap: %d operations checked against a HashMap%n", operations);
+        checkInboxIndexes(emailsPerProducer, producers, editors, 1);
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void awaitStart(CountDownLatch start) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
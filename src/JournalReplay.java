@@ -0,0 +1,296 @@
+package src;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Plays an ActionJournal back against a fresh GameManager as fast as it
+ * can, without a UI or real time. A ManualGameClock jumps to each record's
+ * time, and response deadlines expire on the same game loop ticks as they
+ * did in the original game.
+ * Arrivals are delivered with their journaled spam filter decision,
+ * actions are applied to the same emails, and the game is paused and
+ * resumed at the same clock readings, so the game takes the same path;
+ * level-ups and upgrade purchases are checked against the journal and any
+ * mismatch is counted as a divergence.
+ *
+ * Emails that had their own text (from a corpus) are replayed with template
+ * text, and attachments with blank payloads of the same stored size.
+ */
+public class JournalReplay {
+    // Drop handled emails from the id map this often
+    private static final int PURGE_INTERVAL = 4096;
+
+    private static final Email.EmailType[] TYPES = Email.EmailType.values();
+    private static final UpgradeType[] UPGRADES = UpgradeType.values();
+    private static final EmailAction[] ACTIONS = EmailAction.values();
+
+    /**
+     * Outcome of one replay
+     */
+    public static final class Result {
+        private final long records;
+        private final long divergences;
+        private final long firstDivergence;
+        private final long wallNanos;
+        private final int score;
+        private final int level;
+        private final String gameOverMessage;
+
+        private Result(long records, long divergences, long firstDivergence, long wallNanos,
+                       int score, int level, String gameOverMessage) {
+            this.records = records;
+            this.divergences = divergences;
+            this.firstDivergence = firstDivergence;
+            this.wallNanos = wallNanos;
+            this.score = score;
+            this.level = level;
+            this.gameOverMessage = gameOverMessage;
+        }
+
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * Get the number of level-ups and purchases that didn't match the journal
+         */
+        public long getDivergences() {
+            return divergences;
+        }
+
+        /**
+         * Get the index of the first record that didn't match, or -1
+         */
+        public long getFirstDivergence() {
+            return firstDivergence;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Get the reason the game ended, or null if it was still running
+         */
+        public String getGameOverMessage() {
+            return gameOverMessage;
+        }
+
+        /**
+         * Get records replayed per second of real time
+         */
+        public double getRecordsPerSecond() {
+            return records * 1e9 / Math.max(1, wallNanos);
+        }
+    }
+
+    private final Path path;
+
+    /**
+     * Constructor for a replay of the given journal file
+     */
+    public JournalReplay(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Replay the whole journal
+     */
+    public Result run() throws IOException {
+        long wallStart = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < ActionJournal.HEADER_SIZE) {
+                throw new IOException("Not a journal: " + path);
+            }
+            MappedByteBuffer segment = map(channel, 0, fileSize);
+            if (segment.getInt(ActionJournal.HEADER_MAGIC) != ActionJournal.MAGIC
+                    || segment.getInt(ActionJournal.HEADER_VERSION) != ActionJournal.VERSION) {
+                throw new IOException("Not a version " + ActionJournal.VERSION + " journal: " + path);
+            }
+            long startNanos = segment.getLong(ActionJournal.HEADER_START_NANOS);
+            LocalDateTime startTime = LocalDateTime.ofEpochSecond(
+                    segment.getLong(ActionJournal.HEADER_START_SECOND),
+                    segment.getInt(ActionJournal.HEADER_START_NANO), ZoneOffset.UTC);
+
+            ManualGameClock clock = new ManualGameClock(startTime);
+            EmailSystem emailSystem = new EmailSystem(0, clock);
+            GameManager gameManager = new GameManager(new Player(), emailSystem, new UpgradeSystem(), 0, clock);
+            String[] gameOverMessage = new String[1];
+            gameManager.setListener(new GameListener() {
+                @Override
+                public void stateChanged() {
+                }
+
+                @Override
+                public void levelUp(int level, int bonusCoins) {
+                }
+
+                @Override
+                public void gameOver(String message, int finalScore, int finalLevel) {
+                    gameOverMessage[0] = message;
+                }
+            });
+            gameManager.startWithoutLoop();
+
+            Map<Long, Email> emails = new HashMap<>();
+            AttachmentStore attachments = null;
+            long records = 0;
+            long divergences = 0;
+            long firstDivergence = -1;
+            long arrivals = 0;
+            long lastTickNanos = 0;
+            try {
+                long position = ActionJournal.HEADER_SIZE;
+                while (position + ActionJournal.RECORD_SIZE <= fileSize && gameManager.isGameRunning()) {
+                    long segmentStart = position / ActionJournal.SEGMENT_SIZE * ActionJournal.SEGMENT_SIZE;
+                    if (position == segmentStart && position > 0) {
+                        segment = map(channel, segmentStart, fileSize);
+                    }
+                    int base = (int) (position - segmentStart);
+                    byte kind = segment.get(base + ActionJournal.KIND);
+                    if (kind == 0) {
+                        break; // End of the journal
+                    }
+
+                    // Deadlines only expire on game loop ticks. Arrivals happen on a tick,
+                    // so later ticks fell a whole number of timesteps after the last one;
+                    // expire up to the last tick before this record, then catch up.
+                    long nanos = segment.getLong(base + ActionJournal.NANOS) - startNanos;
+                    if (kind == ActionJournal.ARRIVAL) {
+                        lastTickNanos = nanos;
+                    } else if (nanos > lastTickNanos) {
+                        lastTickNanos += (nanos - lastTickNanos) / GameManager.TICK_NANOS * GameManager.TICK_NANOS;
+                    }
+                    advanceTo(clock, lastTickNanos);
+                    if (!gameManager.isGamePaused()) {
+                        gameManager.expireDeadlines(); // Ticks do nothing while paused
+                    }
+                    advanceTo(clock, nanos);
+
+                    byte code = segment.get(base + ActionJournal.CODE);
+                    byte flags = segment.get(base + ActionJournal.FLAGS);
+                    long emailId = segment.getLong(base + ActionJournal.EMAIL_ID);
+                    boolean matched = true;
+                    if (kind == ActionJournal.ARRIVAL) {
+                        boolean fullText = (flags & ActionJournal.FULL_TEXT_FLAG) != 0;
+                        Email email = new Email(TYPES[code],
+                                                fullText ? 0 : segment.get(base + ActionJournal.SENDER_SLOT),
+                                                fullText ? 0 : segment.get(base + ActionJournal.SUBJECT_SLOT),
+                                                segment.getInt(base + ActionJournal.VALUE),
+                                                (flags & ActionJournal.URGENT_FLAG) != 0, clock, clock.nanoTime());
+                        email.setId(emailId);
+                        int attachmentBytes = segment.getInt(base + ActionJournal.VALUE2);
+                        if (attachmentBytes > 0) {
+                            if (attachments == null) {
+                                attachments = AttachmentStore.createTemporary();
+                                emailSystem.setAttachmentStore(attachments);
+                            }
+                            email.setAttachment(attachments.store(new byte[attachmentBytes],
+                                                                  Deflater.NO_COMPRESSION));
+                        }
+                        if (gameManager.deliverEmail(email, (flags & ActionJournal.FILTERED_FLAG) != 0) != null) {
+                            emails.put(emailId, email);
+                        }
+                        if (++arrivals % PURGE_INTERVAL == 0) {
+                            emails.values().removeIf(e -> !emailSystem.isInInbox(e));
+                        }
+                    } else if (kind == ActionJournal.ACTION) {
+                        Email email = emails.remove(emailId);
+                        if (email == null || !emailSystem.isInInbox(email)) {
+                            matched = false; // Already gone in the replay
+                        } else {
+                            gameManager.processEmailAction(email, ACTIONS[code]);
+                            if (emailSystem.isInInbox(email)) {
+                                emails.put(emailId, email); // Ignored emails stay
+                            }
+                        }
+                    } else if (kind == ActionJournal.UPGRADE) {
+                        boolean success = gameManager.purchaseUpgrade(UPGRADES[code]);
+                        matched = success == ((flags & ActionJournal.SUCCESS_FLAG) != 0);
+                    } else if (kind == ActionJournal.LEVEL_UP) {
+                        Player player = gameManager.getPlayer();
+                        matched = player.getLevel() == segment.getInt(base + ActionJournal.VALUE)
+                               && player.getScore() == segment.getInt(base + ActionJournal.VALUE2);
+                    } else if (kind == ActionJournal.PAUSE) {
+                        gameManager.pauseGame();
+                    } else if (kind == ActionJournal.RESUME) {
+                        gameManager.resumeGame();
+                    } else if (kind == ActionJournal.GAME_OVER) {
+                        matched = !gameManager.isGameRunning(); // Deadlines may have just ended it
+                    }
+                    if (!matched) {
+                        if (divergences++ == 0) {
+                            firstDivergence = records;
+                        }
+                    }
+                    records++;
+                    position += ActionJournal.RECORD_SIZE;
+                }
+            } finally {
+                if (attachments != null) {
+                    attachments.close();
+                }
+            }
+
+            Player player = gameManager.getPlayer();
+            return new Result(records, divergences, firstDivergence, System.nanoTime() - wallStart,
+                              player.getScore(), player.getLevel(), gameOverMessage[0]);
+        }
+    }
+
+    private static void advanceTo(ManualGameClock clock, long nanos) {
+        if (nanos > clock.nanoTime()) {
+            clock.advance(nanos - clock.nanoTime());
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long fileSize) throws IOException {
+        long length = Math.min(ActionJournal.SEGMENT_SIZE, fileSize - start);
+        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        return segment;
+    }
+
+    /**
+     * Replay a journal and report how it went. Replaying more than once
+     * gives a steady workload for profiling.
+     * Usage: JournalReplay journal [times]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: JournalReplay journal [times]");
+            return;
+        }
+        Path path = Paths.get(args[0]);
+        int times = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        for (int i = 0; i < times; i++) {
+            Result result = new JournalReplay(path).run();
+            System.out.printf("Replayed %d records in %.1f ms (%.0f records/s): level %d, score %d, "
+                              + "%d divergences (first at record %d)%s%n",
+                              result.getRecords(), result.getWallNanos() / 1e6, result.getRecordsPerSecond(),
+                              result.getLevel(), result.getScore(), result.getDivergences(),
+                              result.getFirstDivergence(),
+                              result.getGameOverMessage() != null ? ", " + result.getGameOverMessage() : "");
+        }
+    }
+}
@@ -2,9 +2,14 @@ package src;
 
 import javax.swing.*;
 import javax.swing.border.*;
+import javax.swing.event.*;
 import java.awt.*;
 import java.awt.event.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.awt.image.BufferedImage;
 
 /**
@@ -24,6 +29,20 @@ public class MainScreen extends JPanel {
     private JProgressBar inboxCapacityBar;
     private JButton upgradeShopButton;
     private JButton pauseResumeButton;
+    private JButton deleteSelectedButton;
+    private JButton markSelectedSpamButton;
+    private JTextField searchField;
+    private JCheckBox pressingFirstBox;
+    
+    // Emails pulled to the top of the list when "Most pressing first" is on
+    private static final int PRESSING_COUNT = 5;
+    
+    // Search results shown at Search Function level 0 speed; each level adds 10%
+    private static final int BASE_SEARCH_RESULTS = 10;
+    
+    // Game state changes are drawn at most this many times a second
+    private static final int MAX_REFRESH_RATE = 60;
+    private final UiRefreshScheduler refreshScheduler;
     
     /**
      * Constructor for the main screen
@@ -41,8 +60,19 @@ public class MainScreen extends JPanel {
         createEmailList();
         createFooter();
         
-        // NOTE: We delay the updateUI() call to avoid the NullPointerException
-        // It will be called later by the GameManager after everything is initialized
+        // Refreshes are coalesced and start on the first frame, once everything
+        // is initialized (an earlier updateUI() would hit a NullPointerException)
+        refreshScheduler = new UiRefreshScheduler(this::updateUI, MAX_REFRESH_RATE);
+        refreshScheduler.start();
+    }
+    
+    /**
+     * Ask for the screen to be redrawn with the current game state at the
+     * next frame. Safe to call from any thread; any number of calls between
+     * frames lead to one redraw.
+     */
+    public void requestRefresh() {
+        refreshScheduler.requestRefresh();
     }
     
     /**
@@ -119,6 +149,20 @@ public class MainScreen extends JPanel {
         // Custom cell renderer for emails with Windows 95 icons
         emailList.setCellRenderer(new Win95EmailListCellRenderer());
         
+        // Ctrl/Shift-click selects several emails for the bulk buttons
+        emailList.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        emailList.addListSelectionListener(e -> updateSelectionButtons());
+        
+        // Delete key deletes the selection
+        emailList.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0),
+                                                           "deleteSelected");
+        emailList.getActionMap().put("deleteSelected", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                handleSelected(EmailAction.DELETE);
+            }
+        });
+        
         // Add double-click handler
         emailList.addMouseListener(new MouseAdapter() {
             @Override
@@ -137,29 +181,102 @@ public class MainScreen extends JPanel {
         scrollPane.setBorder(Windows95Theme.createTitledBorder("Inbox"));
         scrollPane.setBackground(Windows95Theme.WINDOW_BG);
         
-        add(scrollPane, BorderLayout.CENTER);
+        // Search box, enabled by the Search Function upgrade
+        searchField = new JTextField();
+        searchField.setFont(Windows95Theme.SYSTEM_FONT);
+        searchField.setBorder(Windows95Theme.createTextFieldBorder());
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                updateEmailList();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                updateEmailList();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                updateEmailList();
+            }
+        });
+        
+        JLabel searchLabel = new JLabel("Search: ");
+        searchLabel.setFont(Windows95Theme.SYSTEM_FONT);
+        
+        // Option to pull urgent and soon-due emails to the top
+        pressingFirstBox = new JCheckBox("Most pressing first");
+        pressingFirstBox.setFont(Windows95Theme.SYSTEM_FONT);
+        pressingFirstBox.setBackground(Windows95Theme.WINDOW_BG);
+        pressingFirstBox.addActionListener(e -> {
+            // The priority queue is only kept while the option is on
+            gameManager.getEmailSystem().setPriorityOrderEnabled(pressingFirstBox.isSelected());
+            updateEmailList();
+        });
+        
+        JPanel searchPanel = new JPanel(new BorderLayout(5, 0));
+        searchPanel.setBackground(Windows95Theme.WINDOW_BG);
+        searchPanel.add(searchLabel, BorderLayout.WEST);
+        searchPanel.add(searchField, BorderLayout.CENTER);
+        searchPanel.add(pressingFirstBox, BorderLayout.EAST);
+        
+        JPanel inboxPanel = new JPanel(new BorderLayout(0, 5));
+        inboxPanel.setBackground(Windows95Theme.WINDOW_BG);
+        inboxPanel.add(searchPanel, BorderLayout.NORTH);
+        inboxPanel.add(scrollPane, BorderLayout.CENTER);
+        
+        add(inboxPanel, BorderLayout.CENTER);
     }
     
     /**
      * Create the footer with buttons in Windows 95 style
      */
     private void createFooter() {
-        JPanel footerPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        JPanel footerPanel = new JPanel(new GridLayout(1, 4, 10, 0));
         footerPanel.setBackground(Windows95Theme.WINDOW_BG);
         
         // Create Windows 95 style buttons
+        deleteSelectedButton = Windows95Theme.createButton("Delete Selected");
+        deleteSelectedButton.addActionListener(e -> handleSelected(EmailAction.DELETE));
+        
+        markSelectedSpamButton = Windows95Theme.createButton("Mark Selected as Spam");
+        markSelectedSpamButton.addActionListener(e -> handleSelected(EmailAction.MARK_SPAM));
+        
         upgradeShopButton = Windows95Theme.createButton("Upgrade Shop");
         upgradeShopButton.addActionListener(e -> openUpgradeShopDialog());
         
         pauseResumeButton = Windows95Theme.createButton("Pause");
         pauseResumeButton.addActionListener(e -> togglePauseResume());
         
+        footerPanel.add(deleteSelectedButton);
+        footerPanel.add(markSelectedSpamButton);
         footerPanel.add(upgradeShopButton);
         footerPanel.add(pauseResumeButton);
+        updateSelectionButtons();
         
         add(footerPanel, BorderLayout.SOUTH);
     }
     
+    /**
+     * Apply an action to every selected email at once
+     */
+    private void handleSelected(EmailAction action) {
+        List<Email> selected = emailList.getSelectedValuesList();
+        if (!selected.isEmpty()) {
+            gameManager.processEmailActions(selected, action);
+        }
+    }
+    
+    /**
+     * Enable the bulk buttons while the game is running and emails are selected
+     */
+    private void updateSelectionButtons() {
+        boolean enabled = gameManager != null && gameManager.isGameRunning() && !emailList.isSelectionEmpty();
+        deleteSelectedButton.setEnabled(enabled);
+        markSelectedSpamButton.setEnabled(enabled);
+    }
+    
     /**
      * Toggle between pause and resume
      */
@@ -197,7 +314,7 @@ public class MainScreen extends JPanel {
         dialog.setVisible(true);
         
         // Update UI after shop dialog closes
-        updateUI();
+        requestRefresh();
     }
     
     /**
@@ -239,10 +356,17 @@ public class MainScreen extends JPanel {
         // Update email list
         updateEmailList();
         
+        // Search needs at least one level of the Search Function upgrade
+        boolean canSearch = player.getUpgradeLevel(UpgradeType.SEARCH_FUNCTION) > 0;
+        searchField.setEnabled(canSearch);
+        searchField.setToolTipText(canSearch ? "Search sender, subject and content"
+                                             : "Buy the Search Function upgrade to search your inbox");
+        
         // Disable buttons if game is not running
         boolean gameRunning = gameManager.isGameRunning();
         upgradeShopButton.setEnabled(gameRunning);
         pauseResumeButton.setEnabled(gameRunning);
+        updateSelectionButtons();
     }
     
     /**
@@ -253,20 +377,52 @@ public class MainScreen extends JPanel {
             return; // Skip the update if gameManager is not set yet
         }
         
-        List<Email> inbox = gameManager.getEmailSystem().getInbox();
+        EmailSystem emailSystem = gameManager.getEmailSystem();
+        Player player = gameManager.getPlayer();
+        
+        // Show ranked search results while a search is active
+        String query = searchField.getText().trim();
+        List<Email> inbox;
+        if (!query.isEmpty() && player.getUpgradeLevel(UpgradeType.SEARCH_FUNCTION) > 0) {
+            int maxResults = (int) Math.round(BASE_SEARCH_RESULTS * player.getSearchSpeedModifier());
+            inbox = emailSystem.searchInbox(query, maxResults);
+        } else if (pressingFirstBox.isSelected()) {
+            // Most pressing emails first, then the rest in arrival order
+            List<Email> pressing = emailSystem.getMostPressing(PRESSING_COUNT);
+            Set<Long> pressingIds = new HashSet<>();
+            for (Email email : pressing) {
+                pressingIds.add(email.getId());
+            }
+            inbox = new ArrayList<>(pressing);
+            for (Email email : emailSystem.getInbox()) {
+                if (!pressingIds.contains(email.getId())) {
+                    inbox.add(email);
+                }
+            }
+        } else {
+            inbox = emailSystem.getInbox();
+        }
         
         // Remember selection
-        Email selectedEmail = emailList.getSelectedValue();
+        Set<Long> selectedIds = new HashSet<>();
+        for (Email email : emailList.getSelectedValuesList()) {
+            selectedIds.add(email.getId());
+        }
         
         // Update list model
         emailListModel.clear();
-        for (Email email : inbox) {
-            emailListModel.addElement(email);
-        }
-        
-        // Restore selection if possible
-        if (selectedEmail != null && inbox.contains(selectedEmail)) {
-            emailList.setSelectedValue(selectedEmail, true);
+        emailListModel.addAll(inbox);
+        
+        // Restore the selection of emails still in the inbox
+        if (!selectedIds.isEmpty()) {
+            int[] indices = new int[selectedIds.size()];
+            int count = 0;
+            for (int i = 0; i < inbox.size() && count < indices.length; i++) {
+                if (selectedIds.contains(inbox.get(i).getId())) {
+                    indices[count++] = i;
+                }
+            }
+            emailList.setSelectedIndices(Arrays.copyOf(indices, count));
         }
     }
     
@@ -332,9 +488,13 @@ public class MainScreen extends JPanel {
                 }
                 
                 // Set tooltip with email details
+                String attachment = email.getAttachmentSize() == 0 ? "" :
+                    " | Attachment: " + email.getAttachmentSize() / 1024 + " KB (" +
+                    email.getStoredAttachmentSize() / 1024 + " KB stored)";
                 setToolTipText("From: " + email.getSender() + 
                               " | Size: " + email.getSize() + 
-                              " | Time: " + email.getTimeReceived().toLocalTime());
+                              attachment +
+                              " | Time: " + email.getTimeReceivedText());
             }
             
             return this;
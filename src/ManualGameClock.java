@@ -0,0 +1,40 @@
+package src;
+
+import java.time.LocalDateTime;
+
+/**
+ * Game clock that only moves when advanced.
+ * Used by seeded runs so email timestamps don't depend on real time.
+ */
+public class ManualGameClock implements GameClock {
+    private final LocalDateTime start;
+    private volatile long elapsedNanos;
+
+    /**
+     * Constructor for a clock that starts at the given wall-clock time
+     */
+    public ManualGameClock(LocalDateTime start) {
+        this.start = start;
+        this.elapsedNanos = 0;
+    }
+
+    /**
+     * Move the clock forward
+     */
+    public synchronized void advance(long nanos) {
+        if (nanos < 0) {
+            throw new IllegalArgumentException("Cannot move the clock backwards: " + nanos);
+        }
+        elapsedNanos += nanos;
+    }
+
+    @Override
+    public long nanoTime() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public LocalDateTime toWallTime(long nanoTime) {
+        return start.plusNanos(nanoTime);
+    }
+}
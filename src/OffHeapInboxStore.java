@@ -0,0 +1,298 @@
+package src;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inbox store that keeps email metadata outside the Java heap.
+ * Each email is a fixed-width record in a direct ByteBuffer chunk, so
+ * inboxes with millions of emails add almost nothing for the GC to trace.
+ * Removed records go on a free list and are reused by later adds.
+ *
+ * Email objects are built when asked for and not kept, so listing a huge
+ * inbox puts nothing on the heap that outlives the list; the store tells
+ * emails apart by their storeKey, not by object identity. Emails that carry
+ * their own text or an attachment, or have a response deadline (state the
+ * GameManager keeps on the Email object), are kept on the heap alongside.
+ * Arrival times are game clock readings, as in ColumnarInboxStore.
+ */
+public class OffHeapInboxStore implements InboxStore {
+    // Record layout, in bytes
+    private static final int TYPE = 0;         // byte, FREE when the slot is unused
+    private static final int FLAGS = 1;        // byte, URGENT_FLAG
+    private static final int SENDER_SLOT = 2;  // byte
+    private static final int SUBJECT_SLOT = 3; // byte
+    private static final int SIZE = 4;         // int
+    private static final int UNITS = 8;        // int
+    private static final int GENERATION = 12;  // int
+    private static final int ARRIVAL = 16;     // long, game clock nanos
+    private static final int NEXT = 24;        // int, next in arrival order, or next free slot
+    private static final int PREV = 28;        // int
+    private static final int ID = 32;          // long
+    private static final int RECORD_SIZE = 40;
+
+    private static final byte FREE = -1;
+    private static final byte URGENT_FLAG = 1;
+    private static final int NONE = -1;
+
+    // 2^20 records (40 MB) per chunk keeps every offset inside an int
+    private static final int CHUNK_SHIFT = 20;
+    private static final int RECORDS_PER_CHUNK = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = RECORDS_PER_CHUNK - 1;
+
+    private static final Email.EmailType[] TYPES = Email.EmailType.values();
+
+    private ByteBuffer[] chunks;
+    private int slotCount;
+    private int freeHead;
+    private int head;
+    private int tail;
+    private int liveCount;
+    private long occupiedUnits;
+    private GameClock clock = GameClock.SYSTEM;
+
+    // Emails that don't fit in a record or carry a deadline, by slot
+    private final Map<Integer, Email> heapEmails;
+
+    /**
+     * Constructor for an empty store
+     */
+    public OffHeapInboxStore() {
+        chunks = new ByteBuffer[0];
+        freeHead = NONE;
+        head = NONE;
+        tail = NONE;
+        heapEmails = new HashMap<>();
+    }
+
+    @Override
+    public synchronized boolean tryAdd(Email email, int emailUnits, long capacityUnits) {
+        if (occupiedUnits + emailUnits > capacityUnits) {
+            return false;
+        }
+
+        int slot = allocateSlot();
+        ByteBuffer chunk = chunkOf(slot);
+        int base = offsetOf(slot);
+        chunk.put(base + TYPE, (byte) email.getType().ordinal());
+        chunk.put(base + FLAGS, email.isUrgent() ? URGENT_FLAG : 0);
+        chunk.put(base + SENDER_SLOT, (byte) email.getSenderSlot());
+        chunk.put(base + SUBJECT_SLOT, (byte) email.getSubjectSlot());
+        chunk.putInt(base + SIZE, email.getSize());
+        chunk.putInt(base + UNITS, emailUnits);
+        chunk.putLong(base + ARRIVAL, email.getReceivedNanos());
+        clock = email.getClock();
+        chunk.putLong(base + ID, email.getId());
+        if (!email.isCompact() || email.getResponseWindowSeconds() > 0) {
+            heapEmails.put(slot, email);
+        }
+
+        // Link at the tail of the arrival list
+        chunk.putInt(base + PREV, tail);
+        chunk.putInt(base + NEXT, NONE);
+        if (tail == NONE) {
+            head = slot;
+        } else {
+            setInt(tail, NEXT, slot);
+        }
+        tail = slot;
+
+        email.inboxHandle = this;
+        email.storeKey = key(slot);
+        occupiedUnits += emailUnits;
+        liveCount++;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean remove(Email email) {
+        int slot = findSlot(email);
+        if (slot == NONE) {
+            return false;
+        }
+
+        // Unlink from the arrival list
+        int prev = getInt(slot, PREV);
+        int next = getInt(slot, NEXT);
+        if (prev == NONE) {
+            head = next;
+        } else {
+            setInt(prev, NEXT, next);
+        }
+        if (next == NONE) {
+            tail = prev;
+        } else {
+            setInt(next, PREV, prev);
+        }
+
+        occupiedUnits -= getInt(slot, UNITS);
+        liveCount--;
+        heapEmails.remove(slot);
+        email.inboxHandle = null;
+
+        // Invalidate old handles and push the slot on the free list
+        ByteBuffer chunk = chunkOf(slot);
+        int base = offsetOf(slot);
+        chunk.put(base + TYPE, FREE);
+        chunk.putInt(base + GENERATION, chunk.getInt(base + GENERATION) + 1);
+        chunk.putInt(base + NEXT, freeHead);
+        freeHead = slot;
+        return true;
+    }
+
+    @Override
+    public synchronized boolean contains(Email email) {
+        return findSlot(email) != NONE;
+    }
+
+    @Override
+    public synchronized long getOccupiedUnits() {
+        return occupiedUnits;
+    }
+
+    @Override
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    @Override
+    public synchronized List<Email> snapshot() {
+        List<Email> emails = new ArrayList<>(liveCount);
+        for (int slot = head; slot != NONE; slot = getInt(slot, NEXT)) {
+            emails.add(viewOf(slot));
+        }
+        return emails;
+    }
+
+    @Override
+    public synchronized int countSpam() {
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            byte type = chunkOf(slot).get(offsetOf(slot) + TYPE);
+            if (type != FREE && TYPES[type].isSpam()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public synchronized void refresh(Email email) {
+        int slot = findSlot(email);
+        if (slot != NONE) {
+            ByteBuffer chunk = chunkOf(slot);
+            int base = offsetOf(slot);
+            byte flags = chunk.get(base + FLAGS);
+            chunk.put(base + FLAGS, (byte) (email.isUrgent() ? flags | URGENT_FLAG : flags & ~URGENT_FLAG));
+        }
+    }
+
+    @Override
+    public synchronized Email findOldestUrgent() {
+        int oldest = NONE;
+        long oldestArrival = Long.MAX_VALUE;
+        for (int slot = 0; slot < slotCount; slot++) {
+            ByteBuffer chunk = chunkOf(slot);
+            int base = offsetOf(slot);
+            if (chunk.get(base + TYPE) != FREE && (chunk.get(base + FLAGS) & URGENT_FLAG) != 0) {
+                long arrival = chunk.getLong(base + ARRIVAL);
+                if (arrival < oldestArrival) {
+                    oldest = slot;
+                    oldestArrival = arrival;
+                }
+            }
+        }
+        return oldest == NONE ? null : viewOf(oldest);
+    }
+
+    /**
+     * Get the number of bytes reserved outside the heap
+     */
+    public synchronized long getOffHeapBytes() {
+        return (long) chunks.length * RECORDS_PER_CHUNK * RECORD_SIZE;
+    }
+
+    /**
+     * Iterate over emails in arrival order.
+     * Iterates over a snapshot, so the store can change while iterating.
+     */
+    @Override
+    public Iterator<Email> iterator() {
+        return snapshot().iterator();
+    }
+
+    private int findSlot(Email email) {
+        if (email.inboxHandle != this) {
+            return NONE;
+        }
+        long storeKey = email.storeKey;
+        int slot = (int) storeKey;
+        if (slot < 0 || slot >= slotCount || chunkOf(slot).get(offsetOf(slot) + TYPE) == FREE
+                || getInt(slot, GENERATION) != (int) (storeKey >>> 32)) {
+            return NONE;
+        }
+        return slot;
+    }
+
+    private long key(int slot) {
+        return ((long) getInt(slot, GENERATION) << 32) | (slot & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Get the Email for a slot: the one kept on the heap, or a transient
+     * view built from the record. Views aren't cached; any view of a slot
+     * can be used to remove or look up the email it was built from.
+     */
+    private Email viewOf(int slot) {
+        Email view = heapEmails.get(slot);
+        if (view != null) {
+            return view;
+        }
+        ByteBuffer chunk = chunkOf(slot);
+        int base = offsetOf(slot);
+        view = new Email(TYPES[chunk.get(base + TYPE)], chunk.get(base + SENDER_SLOT),
+                         chunk.get(base + SUBJECT_SLOT), chunk.getInt(base + SIZE),
+                         (chunk.get(base + FLAGS) & URGENT_FLAG) != 0,
+                         clock, chunk.getLong(base + ARRIVAL));
+        view.setId(chunk.getLong(base + ID));
+        view.inboxHandle = this;
+        view.storeKey = key(slot);
+        return view;
+    }
+
+    private int allocateSlot() {
+        if (freeHead != NONE) {
+            int slot = freeHead;
+            freeHead = getInt(slot, NEXT);
+            return slot;
+        }
+        if (slotCount == chunks.length * RECORDS_PER_CHUNK) {
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE)
+                                                  .order(ByteOrder.nativeOrder());
+        }
+        return slotCount++;
+    }
+
+    private ByteBuffer chunkOf(int slot) {
+        return chunks[slot >>> CHUNK_SHIFT];
+    }
+
+    private static int offsetOf(int slot) {
+        return (slot & CHUNK_MASK) * RECORD_SIZE;
+    }
+
+    private int getInt(int slot, int field) {
+        return chunkOf(slot).getInt(offsetOf(slot) + field);
+    }
+
+    private void setInt(int slot, int field, int value) {
+        chunkOf(slot).putInt(offsetOf(slot) + field, value);
+    }
+}
@@ -1,105 +1,196 @@
 package src;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.Deflater;
 
 /**
  * Manages player-related data like score, coins, and upgrades.
  * Handles user input and decision validation.
+ *
+ * Points are awarded from the game loop (spam filter bonuses) and from the
+ * EDT (player actions and purchases) at the same time, so the whole economy
+ * lives in one immutable Ledger that every change replaces with a
+ * compare-and-set. A change that loses a race is simply recomputed from the
+ * newer ledger, so no points, coins or combo steps are ever lost, and a
+ * purchase either pays and upgrades together or does nothing.
  */
 public class Player {
-    private int score;
-    private int coins;
-    private int level;
-    private int consecutiveCorrectActions;
-    private double comboMultiplier;
-    private Map<UpgradeType, Integer> upgradeLevel;
+    private static final UpgradeType[] UPGRADES = UpgradeType.values();
     
     /**
-     * Constructor for the player
+     * One consistent state of the player's economy. Never modified after
+     * it is published.
      */
-    public Player() {
-        score = 0;
-        coins = 0;
-        level = 1;
-        consecutiveCorrectActions = 0;
-        comboMultiplier = 1.0;
-        upgradeLevel = new HashMap<>();
+    private static final class Ledger {
+        final int score;
+        final int coins;
+        final int level;
+        final int consecutiveCorrectActions;
+        final int[] upgradeLevels; // By UpgradeType ordinal
+        
+        Ledger(int score, int coins, int level, int consecutiveCorrectActions, int[] upgradeLevels) {
+            this.score = score;
+            this.coins = coins;
+            this.level = level;
+            this.consecutiveCorrectActions = consecutiveCorrectActions;
+            this.upgradeLevels = upgradeLevels;
+        }
+        
+        Ledger withScore(int score, int coins, int consecutiveCorrectActions) {
+            return new Ledger(score, coins, level, consecutiveCorrectActions, upgradeLevels);
+        }
         
-        // Initialize all upgrades to level 0
-        for (UpgradeType type : UpgradeType.values()) {
-            upgradeLevel.put(type, 0);
+        Ledger withCoins(int coins) {
+            return new Ledger(score, coins, level, consecutiveCorrectActions, upgradeLevels);
         }
+        
+        Ledger withLevel(int level) {
+            return new Ledger(score, coins, level, consecutiveCorrectActions, upgradeLevels);
+        }
+        
+        Ledger withUpgrade(UpgradeType type, int coins) {
+            int[] levels = upgradeLevels.clone();
+            levels[type.ordinal()]++;
+            return new Ledger(score, coins, level, consecutiveCorrectActions, levels);
+        }
+    }
+    
+    private final AtomicReference<Ledger> ledger;
+    
+    /**
+     * Constructor for the player
+     */
+    public Player() {
+        // All upgrades start at level 0
+        ledger = new AtomicReference<>(new Ledger(0, 0, 1, 0, new int[UPGRADES.length]));
     }
     
     /**
      * Award points for correct actions
      */
     public void awardPoints(int basePoints) {
-        int calculatedPoints = (int) (basePoints * comboMultiplier);
-        score += calculatedPoints;
-        
-        // Update combo multiplier
-        consecutiveCorrectActions++;
-        updateComboMultiplier();
-        
-        // Award coins (1 coin per 10 points)
-        awardCoins(calculatedPoints / 10);
-        if (calculatedPoints % 10 == 0 && calculatedPoints > 0) {
-            awardCoins(1);
-        }
+        Ledger current;
+        Ledger next;
+        do {
+            current = ledger.get();
+            int calculatedPoints = (int) (basePoints * getComboMultiplier(current.consecutiveCorrectActions));
+            
+            // Award coins (1 coin per 10 points)
+            int coins = calculatedPoints / 10;
+            if (calculatedPoints % 10 == 0 && calculatedPoints > 0) {
+                coins++;
+            }
+            
+            // The combo grows with each correct action
+            next = current.withScore(current.score + calculatedPoints, current.coins + coins,
+                                     current.consecutiveCorrectActions + 1);
+        } while (!ledger.compareAndSet(current, next));
     }
     
     /**
      * Deduct points for incorrect actions
      */
     public void deductPoints(int points) {
-        score = Math.max(0, score - points); // Never go below 0
-        
-        // Reset combo on incorrect action
-        consecutiveCorrectActions = 0;
-        updateComboMultiplier();
+        Ledger current;
+        Ledger next;
+        do {
+            current = ledger.get();
+            // Never go below 0, and reset combo on incorrect action
+            next = current.withScore(Math.max(0, current.score - points), current.coins, 0);
+        } while (!ledger.compareAndSet(current, next));
     }
     
     /**
      * Award coins to the player
      */
     public void awardCoins(int amount) {
-        coins += amount;
+        Ledger current;
+        do {
+            current = ledger.get();
+        } while (!ledger.compareAndSet(current, current.withCoins(current.coins + amount)));
     }
     
     /**
      * Deduct coins for purchases
      */
     public boolean deductCoins(int amount) {
-        if (coins >= amount) {
-            coins -= amount;
-            return true;
-        }
-        return false; // Not enough coins
+        Ledger current;
+        do {
+            current = ledger.get();
+            if (current.coins < amount) {
+                return false; // Not enough coins
+            }
+        } while (!ledger.compareAndSet(current, current.withCoins(current.coins - amount)));
+        return true;
     }
     
     /**
-     * Update the combo multiplier based on consecutive correct actions
+     * Get the combo multiplier for a number of consecutive correct actions
      */
-    private void updateComboMultiplier() {
+    private static double getComboMultiplier(int consecutiveCorrectActions) {
         // Cap combo at 10 consecutive actions for a max 2.0x multiplier
-        comboMultiplier = 1.0 + (Math.min(consecutiveCorrectActions, 10) * 0.1);
+        return 1.0 + (Math.min(consecutiveCorrectActions, 10) * 0.1);
     }
     
     /**
      * Get the current level of a specific upgrade
      */
     public int getUpgradeLevel(UpgradeType type) {
-        return upgradeLevel.getOrDefault(type, 0);
+        return ledger.get().upgradeLevels[type.ordinal()];
     }
     
     /**
      * Increase the level of a specific upgrade
      */
     public void increaseUpgradeLevel(UpgradeType type) {
-        int currentLevel = upgradeLevel.getOrDefault(type, 0);
-        upgradeLevel.put(type, currentLevel + 1);
+        Ledger current;
+        do {
+            current = ledger.get();
+        } while (!ledger.compareAndSet(current, current.withUpgrade(type, current.coins)));
+    }
+    
+    /**
+     * Buy the next level of an upgrade in one step: if it is below maxLevel
+     * and the player can afford costOfLevel(current level), pay for it and
+     * raise its level together. Returns false, changing nothing, otherwise.
+     */
+    boolean tryPurchaseUpgrade(UpgradeType type, int maxLevel, IntUnaryOperator costOfLevel) {
+        Ledger current;
+        Ledger next;
+        do {
+            current = ledger.get();
+            int currentLevel = current.upgradeLevels[type.ordinal()];
+            if (currentLevel >= maxLevel) {
+                return false;
+            }
+            int cost = costOfLevel.applyAsInt(currentLevel);
+            if (current.coins < cost) {
+                return false;
+            }
+            next = current.withUpgrade(type, current.coins - cost);
+        } while (!ledger.compareAndSet(current, next));
+        return true;
+    }
+    
+    /**
+     * Get the number of correct actions in a row, which sets the combo
+     */
+    int getConsecutiveCorrectActions() {
+        return ledger.get().consecutiveCorrectActions;
+    }
+    
+    /**
+     * Put back a saved player, such as one loaded from a GameSnapshot
+     */
+    void restore(int score, int coins, int level, int consecutiveCorrectActions,
+                 Map<UpgradeType, Integer> upgradeLevels) {
+        int[] levels = new int[UPGRADES.length];
+        for (UpgradeType type : UPGRADES) {
+            levels[type.ordinal()] = upgradeLevels.getOrDefault(type, 0);
+        }
+        ledger.set(new Ledger(score, coins, level, consecutiveCorrectActions, levels));
     }
     
     /**
@@ -107,33 +198,37 @@ public class Player {
      */
     public boolean checkLevelUp() {
         // Level up every 500 * current level points
-        int requiredPoints = 500 * level;
-        return score >= requiredPoints;
+        Ledger current = ledger.get();
+        int requiredPoints = 500 * current.level;
+        return current.score >= requiredPoints;
     }
     
     /**
      * Level up the player
      */
     public void levelUp() {
-        level++;
+        Ledger current;
+        do {
+            current = ledger.get();
+        } while (!ledger.compareAndSet(current, current.withLevel(current.level + 1)));
     }
     
     // Getters for player attributes
     
     public int getScore() {
-        return score;
+        return ledger.get().score;
     }
     
     public int getCoins() {
-        return coins;
+        return ledger.get().coins;
     }
     
     public int getLevel() {
-        return level;
+        return ledger.get().level;
     }
     
     public double getComboMultiplier() {
-        return comboMultiplier;
+        return getComboMultiplier(ledger.get().consecutiveCorrectActions);
     }
     
     /**
@@ -162,11 +257,21 @@ public class Player {
     }
     
     /**
-     * Get the spam filter effectiveness based on the Spam Filter upgrade
+     * Get the spam probability at which the Spam Filter removes an email
      */
-    public double getSpamFilterChance() {
-        // Each level gives 5% chance to auto-delete spam
-        return getUpgradeLevel(UpgradeType.SPAM_FILTER) * 0.05;
+    public double getSpamFilterThreshold() {
+        return getSpamFilterThreshold(getUpgradeLevel(UpgradeType.SPAM_FILTER));
+    }
+    
+    /**
+     * Get the spam filter threshold for a Spam Filter upgrade level
+     */
+    public static double getSpamFilterThreshold(int upgradeLevel) {
+        if (upgradeLevel == 0) {
+            return Double.POSITIVE_INFINITY; // No filter installed
+        }
+        // Level 1 only removes near-certain spam; each level filters more aggressively
+        return 0.99 - (upgradeLevel - 1) * 0.025;
     }
     
     /**
@@ -186,10 +291,18 @@ public class Player {
     }
     
     /**
-     * Get the attachment space reduction based on the Attachment Compressor upgrade
+     * Get the Deflater level for attachments based on the Attachment Compressor upgrade
+     */
+    public int getAttachmentCompressionLevel() {
+        return getAttachmentCompressionLevel(getUpgradeLevel(UpgradeType.ATTACHMENT_COMPRESSOR));
+    }
+    
+    /**
+     * Get the Deflater level for an Attachment Compressor upgrade level.
+     * Level 0 stores attachments uncompressed and each level compresses
+     * harder, up to 9, where UpgradeSystem caps the upgrade.
      */
-    public double getAttachmentSpaceReduction() {
-        // Each level reduces space by 5%
-        return getUpgradeLevel(UpgradeType.ATTACHMENT_COMPRESSOR) * 0.05;
+    public static int getAttachmentCompressionLevel(int level) {
+        return Math.min(level, Deflater.BEST_COMPRESSION);
     }
 }
\ No newline at end of file
@@ -0,0 +1,219 @@
+package src;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Decides how a simulated player handles emails in a HeadlessSimulation:
+ * which email to work on next, what to do with it, how long that takes,
+ * and which upgrades to buy.
+ */
+public interface PlayerPolicy {
+    /**
+     * Get how long the player takes to read and act on an email, before
+     * the Response Speed and Quick Reply upgrades are applied
+     */
+    long getHandlingNanos(Email email, RandomGenerator random);
+
+    /**
+     * Choose what to do with an email
+     */
+    EmailAction chooseAction(Email email, RandomGenerator random);
+
+    /**
+     * Choose the next email to work on, or null to leave the inbox alone.
+     * By default the player works through the inbox oldest first.
+     */
+    default Email chooseEmail(EmailSystem emailSystem, RandomGenerator random) {
+        List<Email> inbox = emailSystem.getInbox();
+        return inbox.isEmpty() ? null : inbox.get(0);
+    }
+
+    /**
+     * Choose an upgrade to buy between emails, or null to buy nothing.
+     * By default the player never shops.
+     */
+    default UpgradeType chooseUpgrade(Player player, UpgradeSystem upgradeSystem, RandomGenerator random) {
+        return null;
+    }
+
+    /**
+     * Check if the policy calls EmailSystem.getMostPressing, which needs
+     * priority ordering turned on
+     */
+    default boolean usesPriorityOrder() {
+        return false;
+    }
+
+    /**
+     * A player who always takes the right action after a fixed time
+     */
+    static PlayerPolicy accurate(long handlingNanos) {
+        return new PlayerPolicy() {
+            @Override
+            public long getHandlingNanos(Email email, RandomGenerator random) {
+                return handlingNanos;
+            }
+
+            @Override
+            public EmailAction chooseAction(Email email, RandomGenerator random) {
+                return correctAction(email);
+            }
+        };
+    }
+
+    /**
+     * A player who never makes a mistake, always works on the most pressing
+     * email, and levels its upgrades evenly in the order that protects the
+     * inbox most: Spam Filter, Inbox Capacity, Response Speed, Quick Reply
+     */
+    static PlayerPolicy perfect(long handlingNanos) {
+        UpgradeType[] plan = {
+            UpgradeType.SPAM_FILTER, UpgradeType.INBOX_CAPACITY, UpgradeType.RESPONSE_SPEED, UpgradeType.QUICK_REPLY
+        };
+        return new PlayerPolicy() {
+            @Override
+            public long getHandlingNanos(Email email, RandomGenerator random) {
+                return handlingNanos;
+            }
+
+            @Override
+            public EmailAction chooseAction(Email email, RandomGenerator random) {
+                return correctAction(email);
+            }
+
+            @Override
+            public boolean usesPriorityOrder() {
+                return true;
+            }
+
+            @Override
+            public Email chooseEmail(EmailSystem emailSystem, RandomGenerator random) {
+                List<Email> pressing = emailSystem.getMostPressing(1);
+                return pressing.isEmpty() ? null : pressing.get(0);
+            }
+
+            @Override
+            public UpgradeType chooseUpgrade(Player player, UpgradeSystem upgradeSystem, RandomGenerator random) {
+                // Save up for the least upgraded step of the plan
+                UpgradeType next = null;
+                for (UpgradeType type : plan) {
+                    if (player.getUpgradeLevel(type) < upgradeSystem.getMaxUpgradeLevel(type)
+                            && (next == null || player.getUpgradeLevel(type) < player.getUpgradeLevel(next))) {
+                        next = type;
+                    }
+                }
+                return next != null && upgradeSystem.canPurchaseUpgrade(player, next) ? next : null;
+            }
+        };
+    }
+
+    /**
+     * A human-like player. Handling times are log-normally distributed
+     * around meanHandlingNanos, and each email gets the wrong action with
+     * probability mistakeRate. The player deals with urgent emails first,
+     * otherwise works oldest first, and buys a random upgrade it can afford.
+     */
+    static PlayerPolicy noisyHuman(long meanHandlingNanos, double mistakeRate) {
+        double sigma = 0.5;
+        return new PlayerPolicy() {
+            @Override
+            public long getHandlingNanos(Email email, RandomGenerator random) {
+                // exp(N(-sigma^2/2, sigma^2)) has a mean of 1
+                return (long) (meanHandlingNanos * Math.exp(sigma * random.nextGaussian() - sigma * sigma / 2));
+            }
+
+            @Override
+            public EmailAction chooseAction(Email email, RandomGenerator random) {
+                if (random.nextDouble() >= mistakeRate) {
+                    return correctAction(email);
+                }
+                // Misjudge the email: answer spam, or throw away a real one
+                return email.isSpam() ? EmailAction.RESPOND
+                     : random.nextBoolean() ? EmailAction.DELETE : EmailAction.MARK_SPAM;
+            }
+
+            @Override
+            public Email chooseEmail(EmailSystem emailSystem, RandomGenerator random) {
+                Email urgent = emailSystem.getOldestUrgentEmail();
+                return urgent != null ? urgent : PlayerPolicy.super.chooseEmail(emailSystem, random);
+            }
+
+            @Override
+            public UpgradeType chooseUpgrade(Player player, UpgradeSystem upgradeSystem, RandomGenerator random) {
+                UpgradeType[] types = upgradeSystem.getAllUpgradeTypes();
+                UpgradeType type = types[random.nextInt(types.length)];
+                return upgradeSystem.canPurchaseUpgrade(player, type) ? type : null;
+            }
+        };
+    }
+
+    /**
+     * A player who goes for the biggest reward right now: legitimate emails
+     * (10 points) before spam (5 points), and the cheapest upgrade as soon
+     * as it is affordable. Never makes a mistake.
+     */
+    static PlayerPolicy greedy(long handlingNanos) {
+        return new PlayerPolicy() {
+            @Override
+            public long getHandlingNanos(Email email, RandomGenerator random) {
+                return handlingNanos;
+            }
+
+            @Override
+            public EmailAction chooseAction(Email email, RandomGenerator random) {
+                return correctAction(email);
+            }
+
+            @Override
+            public Email chooseEmail(EmailSystem emailSystem, RandomGenerator random) {
+                List<Email> inbox = emailSystem.getInbox();
+                for (Email email : inbox) {
+                    if (email.isLegitimate()) {
+                        return email;
+                    }
+                }
+                return inbox.isEmpty() ? null : inbox.get(0);
+            }
+
+            @Override
+            public UpgradeType chooseUpgrade(Player player, UpgradeSystem upgradeSystem, RandomGenerator random) {
+                UpgradeType cheapest = null;
+                int cheapestCost = Integer.MAX_VALUE;
+                for (UpgradeType type : upgradeSystem.getAllUpgradeTypes()) {
+                    int cost = upgradeSystem.getUpgradeCost(type, player.getUpgradeLevel(type));
+                    if (cost < cheapestCost && upgradeSystem.canPurchaseUpgrade(player, type)) {
+                        cheapest = type;
+                        cheapestCost = cost;
+                    }
+                }
+                return cheapest;
+            }
+        };
+    }
+
+    /**
+     * Get the policy with the given name: accurate, perfect, noisy or greedy
+     */
+    static PlayerPolicy named(String name, long handlingNanos) {
+        switch (name) {
+            case "accurate":
+                return accurate(handlingNanos);
+            case "perfect":
+                return perfect(handlingNanos);
+            case "noisy":
+                return noisyHuman(handlingNanos, 0.05);
+            case "greedy":
+                return greedy(handlingNanos);
+            default:
+                throw new IllegalArgumentException("Unknown player policy: " + name);
+        }
+    }
+
+    /**
+     * Get the action that scores best for an email
+     */
+    private static EmailAction correctAction(Email email) {
+        return email.isSpam() ? EmailAction.MARK_SPAM : EmailAction.RESPOND;
+    }
+}
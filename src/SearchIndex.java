@@ -0,0 +1,300 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index over the sender, subject and content of inbox emails.
+ * Kept up to date as emails are added and removed, and answers queries
+ * with BM25-ranked top-k results so search never scans the inbox.
+ */
+public class SearchIndex {
+    // Standard BM25 parameters
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private static final int INITIAL_DOCS = 64;
+    private static final int NONE = -1;
+
+    /**
+     * Documents containing one term, with the term frequency in each
+     */
+    private static final class Postings {
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        int add(int doc, int freq) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = freq;
+            return size++;
+        }
+    }
+
+    /**
+     * An indexed email and where each of its terms sits in the postings lists
+     */
+    private static final class Doc {
+        final Email email;
+        final int length;
+        final Postings[] terms;
+        final int[] positions;
+
+        Doc(Email email, int length, int termCount) {
+            this.email = email;
+            this.length = length;
+            this.terms = new Postings[termCount];
+            this.positions = new int[termCount];
+        }
+    }
+
+    private final Map<String, Postings> postingsByTerm;
+    private final LongIntHashMap docByEmailId;
+    private Doc[] docs;
+    private int[] docLengths; // Copy of Doc.length kept flat for the scoring loop
+    private int[] freeDocs;
+    private int freeCount;
+    private int docSlots;
+    private int liveDocs;
+    private long totalLength;
+
+    // Scratch space for scoring, reused between queries
+    private float[] scores;
+    private int[] touched;
+
+    /**
+     * Constructor for an empty index
+     */
+    public SearchIndex() {
+        postingsByTerm = new HashMap<>();
+        docByEmailId = new LongIntHashMap();
+        docs = new Doc[INITIAL_DOCS];
+        docLengths = new int[INITIAL_DOCS];
+        freeDocs = new int[INITIAL_DOCS];
+        scores = new float[INITIAL_DOCS];
+        touched = new int[INITIAL_DOCS];
+    }
+
+    /**
+     * Index an email
+     */
+    public synchronized void add(Email email) {
+        if (docByEmailId.containsKey(email.getId())) {
+            return;
+        }
+
+        Map<String, Integer> termFreqs = new HashMap<>();
+        int length = countTerms(email.getSender(), termFreqs)
+                   + countTerms(email.getSubject(), termFreqs)
+                   + countTerms(email.scanContent(), termFreqs);
+
+        int slot = allocateDoc();
+        Doc doc = new Doc(email, length, termFreqs.size());
+        int i = 0;
+        for (Map.Entry<String, Integer> termFreq : termFreqs.entrySet()) {
+            Postings postings = postingsByTerm.computeIfAbsent(termFreq.getKey(), term -> new Postings());
+            doc.terms[i] = postings;
+            doc.positions[i] = postings.add(slot, termFreq.getValue());
+            i++;
+        }
+
+        docs[slot] = doc;
+        docLengths[slot] = length;
+        docByEmailId.put(email.getId(), slot);
+        liveDocs++;
+        totalLength += length;
+    }
+
+    /**
+     * Remove an email from the index
+     */
+    public synchronized void remove(Email email) {
+        int slot = docByEmailId.get(email.getId(), NONE);
+        if (slot == NONE) {
+            return;
+        }
+        docByEmailId.remove(email.getId());
+
+        Doc doc = docs[slot];
+        for (int i = 0; i < doc.terms.length; i++) {
+            removePosting(doc.terms[i], doc.positions[i]);
+        }
+
+        docs[slot] = null;
+        freeDocs[freeCount++] = slot;
+        liveDocs--;
+        totalLength -= doc.length;
+    }
+
+    /**
+     * Remove one posting by swapping the last posting into its place,
+     * then point the moved document at its new position
+     */
+    private void removePosting(Postings postings, int position) {
+        int last = --postings.size;
+        if (position != last) {
+            int movedDoc = postings.docs[last];
+            postings.docs[position] = movedDoc;
+            postings.freqs[position] = postings.freqs[last];
+
+            Doc moved = docs[movedDoc];
+            for (int i = 0; i < moved.terms.length; i++) {
+                if (moved.terms[i] == postings) {
+                    moved.positions[i] = position;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the emails that best match a query, best first
+     */
+    public synchronized List<Email> search(String query, int maxResults) {
+        List<Email> results = new ArrayList<>();
+        if (maxResults <= 0 || liveDocs == 0) {
+            return results;
+        }
+
+        Map<String, Integer> queryTerms = new HashMap<>();
+        countTerms(query, queryTerms);
+
+        // Accumulate BM25 scores for every document that contains a query term
+        float averageLength = (float) totalLength / liveDocs;
+        int touchedCount = 0;
+        for (String term : queryTerms.keySet()) {
+            Postings postings = postingsByTerm.get(term);
+            if (postings == null || postings.size == 0) {
+                continue;
+            }
+            float idf = (float) Math.log(1 + (liveDocs - postings.size + 0.5) / (postings.size + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                int freq = postings.freqs[i];
+                float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+                if (scores[doc] == 0) {
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += idf * freq * (K1 + 1) / (freq + norm);
+            }
+        }
+
+        // Keep the best maxResults in a bounded min-heap
+        int heapCapacity = Math.min(maxResults, touchedCount);
+        int[] heap = new int[heapCapacity];
+        int heapSize = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int doc = touched[i];
+            if (heapSize < heapCapacity) {
+                heap[heapSize] = doc;
+                siftUp(heap, heapSize++);
+            } else if (scores[doc] > scores[heap[0]]) {
+                heap[0] = doc;
+                siftDown(heap, heapSize);
+            }
+        }
+
+        // Drain the heap worst-first, then reverse
+        while (heapSize > 0) {
+            results.add(docs[heap[0]].email);
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize);
+        }
+        Collections.reverse(results);
+
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0;
+        }
+        return results;
+    }
+
+    /**
+     * Get the number of indexed emails
+     */
+    public synchronized int size() {
+        return liveDocs;
+    }
+
+    private void siftUp(int[] heap, int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[heap[index]] >= scores[heap[parent]]) {
+                break;
+            }
+            swap(heap, index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size) {
+        int index = 0;
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && scores[heap[left]] < scores[heap[smallest]]) {
+                smallest = left;
+            }
+            if (right < size && scores[heap[right]] < scores[heap[smallest]]) {
+                smallest = right;
+            }
+            if (smallest == index) {
+                return;
+            }
+            swap(heap, index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+    }
+
+    private int allocateDoc() {
+        if (freeCount > 0) {
+            return freeDocs[--freeCount];
+        }
+        if (docSlots == docs.length) {
+            int capacity = docs.length * 2;
+            docs = Arrays.copyOf(docs, capacity);
+            docLengths = Arrays.copyOf(docLengths, capacity);
+            freeDocs = Arrays.copyOf(freeDocs, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            touched = Arrays.copyOf(touched, capacity);
+        }
+        return docSlots++;
+    }
+
+    /**
+     * Split text into lower-case letter/digit terms and count them.
+     * Returns the number of terms found.
+     */
+    private static int countTerms(String text, Map<String, Integer> termFreqs) {
+        if (text == null) {
+            return 0;
+        }
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                termFreqs.merge(text.substring(start, i).toLowerCase(), 1, Integer::sum);
+                count++;
+                start = -1;
+            }
+        }
+        return count;
+    }
+}
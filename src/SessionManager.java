@@ -0,0 +1,270 @@
+package src;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hosts many independent game sessions in one JVM.
+ * A single timer thread fires every GameManager.TICK_NANOS and hands each
+ * session's tick to a virtual thread, so sessions cost no platform threads
+ * of their own. On a JDK without virtual threads (before 21) the ticks run
+ * on a pool with one platform thread per core instead. A session never runs two ticks at once: ticks that arrive
+ * while one is running are counted and run straight after it, so a slow
+ * session catches up instead of losing time or holding up the others.
+ */
+public class SessionManager {
+    private static final Logger LOGGER = Logger.getLogger(SessionManager.class.getName());
+    private static final LocalDateTime START_TIME = LocalDateTime.of(2000, 1, 1, 9, 0);
+
+    /**
+     * One hosted game: its own Player, EmailSystem and GameManager
+     */
+    public static final class Session {
+        private final long id;
+        private final GameManager gameManager;
+        private final ManualGameClock clock;
+        private final PlayerPolicy autoPlayer;
+        private final SplittableRandom autoPlayerRandom;
+        private long nextActionNanos; // When the auto player is free again
+
+        // Ticks waiting to run; the session is running while this is above 0
+        private final AtomicInteger pendingTicks = new AtomicInteger();
+
+        private Session(long id, GameManager gameManager, ManualGameClock clock,
+                        PlayerPolicy autoPlayer, SplittableRandom autoPlayerRandom) {
+            this.id = id;
+            this.gameManager = gameManager;
+            this.clock = clock;
+            this.autoPlayer = autoPlayer;
+            this.autoPlayerRandom = autoPlayerRandom;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public GameManager getGameManager() {
+            return gameManager;
+        }
+
+        public Player getPlayer() {
+            return gameManager.getPlayer();
+        }
+    }
+
+    private final Map<Long, Session> sessions;
+    private final AtomicLong nextSessionId;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final LongAdder ticksRun;
+    private final LongAdder lateTicks;
+
+    /**
+     * Constructor for a manager that starts ticking right away
+     */
+    public SessionManager() {
+        sessions = new ConcurrentHashMap<>();
+        nextSessionId = new AtomicLong();
+        ticksRun = new LongAdder();
+        lateTicks = new LongAdder();
+        workers = newWorkers();
+        timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "session-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::dispatchTicks, GameManager.TICK_NANOS, GameManager.TICK_NANOS,
+                                  TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Start a session driven by a player (through its GameManager)
+     */
+    public Session createSession(long seed) {
+        return createSession(seed, null);
+    }
+
+    /**
+     * Start a session. If autoPlayer is set, it handles the most pressing
+     * email whenever it is free, taking the policy's handling time.
+     * The session's game clock moves one timestep per tick, and the same
+     * seed and policy replay the same game.
+     */
+    public Session createSession(long seed, PlayerPolicy autoPlayer) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        ManualGameClock clock = new ManualGameClock(START_TIME);
+        EmailSystem emailSystem = new EmailSystem(seeds.nextLong(), clock);
+        GameManager gameManager = new GameManager(new Player(), emailSystem, new UpgradeSystem(),
+                                                  seeds.nextLong(), clock);
+        Session session = new Session(nextSessionId.incrementAndGet(), gameManager, clock,
+                                      autoPlayer, seeds.split());
+        emailSystem.setPriorityOrderEnabled(autoPlayer != null); // The auto player takes the most pressing email
+        gameManager.startWithoutLoop();
+        sessions.put(session.id, session);
+        return session;
+    }
+
+    /**
+     * Stop ticking a session
+     */
+    public void closeSession(Session session) {
+        sessions.remove(session.id);
+    }
+
+    /**
+     * Get the number of sessions still being ticked.
+     * Sessions leave once their game is over.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Get the number of session ticks run so far
+     */
+    public long getTicksRun() {
+        return ticksRun.sum();
+    }
+
+    /**
+     * Get the number of ticks that had to wait for the session's previous tick
+     */
+    public long getLateTicks() {
+        return lateTicks.sum();
+    }
+
+    /**
+     * Stop the timer and all sessions
+     */
+    public void shutdown() {
+        timer.shutdownNow();
+        workers.shutdown();
+        sessions.clear();
+    }
+
+    /**
+     * Called by the timer: queue one tick for every session
+     */
+    private void dispatchTicks() {
+        for (Session session : sessions.values()) {
+            if (!session.gameManager.isGameRunning()) {
+                sessions.remove(session.id);
+                continue;
+            }
+            int pending = session.pendingTicks.getAndIncrement();
+            if (pending == 0) {
+                workers.execute(() -> runTicks(session));
+            } else {
+                lateTicks.increment(); // Still running; it picks this tick up when done
+            }
+        }
+    }
+
+    /**
+     * Create the executor that runs session ticks: a virtual thread per task
+     * where the JDK has them, otherwise a daemon thread per core. Looked up
+     * by reflection so the class still compiles and runs on JDK 17.
+     */
+    private static ExecutorService newWorkers() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.info("Virtual threads are not available, running sessions on platform threads");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), task -> {
+            Thread thread = new Thread(task, "session-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a session's pending ticks on a worker thread, until none are left
+     */
+    private void runTicks(Session session) {
+        int ticks = session.pendingTicks.get();
+        while (true) {
+            for (int i = 0; i < ticks; i++) {
+                try {
+                    session.gameManager.tick();
+                    if (session.autoPlayer != null) {
+                        autoPlay(session);
+                    }
+                } catch (RuntimeException e) {
+                    // Only this session is affected; end it so it stops failing
+                    LOGGER.log(Level.SEVERE, "Session " + session.id + " tick failed", e);
+                    session.gameManager.gameOver("The game stopped after an internal error: " + e);
+                }
+            }
+            ticksRun.add(ticks);
+            int remaining = session.pendingTicks.addAndGet(-ticks);
+            if (remaining == 0) {
+                return;
+            }
+            ticks = remaining;
+        }
+    }
+
+    private void autoPlay(Session session) {
+        GameManager gameManager = session.gameManager;
+        long now = session.clock.nanoTime();
+        if (!gameManager.isGameRunning() || now < session.nextActionNanos) {
+            return;
+        }
+        List<Email> pressing = gameManager.getEmailSystem().getMostPressing(1);
+        if (pressing.isEmpty()) {
+            return;
+        }
+        Email email = pressing.get(0);
+        gameManager.processEmailAction(email, session.autoPlayer.chooseAction(email, session.autoPlayerRandom));
+        session.nextActionNanos = now + session.autoPlayer.getHandlingNanos(email, session.autoPlayerRandom);
+    }
+
+    /**
+     * Benchmark: host many auto-played sessions and report how well the
+     * shared timer keeps up.
+     * Usage: SessionManager [sessions] [seconds]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int sessionCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        PlayerPolicy policy = PlayerPolicy.accurate(TimeUnit.SECONDS.toNanos(1));
+
+        SessionManager manager = new SessionManager();
+        SplittableRandom seeds = new SplittableRandom(1);
+        long createStart = System.nanoTime();
+        for (int i = 0; i < sessionCount; i++) {
+            manager.createSession(seeds.nextLong(), policy);
+        }
+        System.out.printf("Created %d sessions in %.2f s%n", sessionCount, (System.nanoTime() - createStart) / 1e9);
+
+        long expectedTicksPerSecond = TimeUnit.SECONDS.toNanos(1) / GameManager.TICK_NANOS;
+        long lastTicks = manager.getTicksRun();
+        for (int second = 1; second <= seconds; second++) {
+            Thread.sleep(1000);
+            long ticks = manager.getTicksRun();
+            int active = manager.getSessionCount();
+            Runtime runtime = Runtime.getRuntime();
+            System.out.printf("t=%2ds  active sessions: %d  ticks/s: %d (target %d)  late ticks: %d  "
+                              + "platform threads: %d  heap: %d MB%n",
+                              second, active, ticks - lastTicks, active * expectedTicksPerSecond,
+                              manager.getLateTicks(), Thread.activeCount(),
+                              (runtime.totalMemory() - runtime.freeMemory()) >> 20);
+            lastTicks = ticks;
+        }
+        manager.shutdown();
+    }
+}
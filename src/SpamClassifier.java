@@ -0,0 +1,180 @@
+package src;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Naive Bayes spam classifier behind the Spam Filter upgrade.
+ * Learns from the player's own actions: emails they respond to count as
+ * legitimate, emails they delete or mark as spam count as spam.
+ *
+ * Tokens are lower-cased letter/digit runs from the subject and content,
+ * hashed as they are scanned so scoring never allocates per token.
+ * Counts live in primitive-keyed tables keyed by the token hash.
+ *
+ * Each token is scored by how often it turns up per spam email against per
+ * legitimate email, so it doesn't matter that the player labels far more
+ * legitimate emails than spam (the filter removes most spam before the
+ * player sees it). Tokens seen fewer than MIN_TOKEN_COUNT times are
+ * skipped: an email type the player hasn't handled yet scores as unknown
+ * rather than as spam.
+ */
+public class SpamClassifier {
+    // 64-bit FNV-1a
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    // Times a token must have been seen in training before it is scored
+    private static final int MIN_TOKEN_COUNT = 5;
+
+    // No single token can make an email certain either way
+    private static final double MIN_TOKEN_PROBABILITY = 0.01;
+    private static final double MAX_TOKEN_PROBABILITY = 0.99;
+
+    private final LongIntHashMap spamCounts;
+    private final LongIntHashMap hamCounts;
+    private int spamEmails;
+    private int hamEmails;
+
+    /**
+     * Constructor for an untrained classifier
+     */
+    public SpamClassifier() {
+        spamCounts = new LongIntHashMap();
+        hamCounts = new LongIntHashMap();
+    }
+
+    /**
+     * Learn from an email the player has labelled
+     */
+    public synchronized void train(Email email, boolean spam) {
+        LongIntHashMap counts = spam ? spamCounts : hamCounts;
+        trainText(email.getSubject(), counts);
+        trainText(email.scanContent(), counts);
+        if (spam) {
+            spamEmails++;
+        } else {
+            hamEmails++;
+        }
+    }
+
+    /**
+     * Get the probability that an email is spam.
+     * Returns 0.5 until at least one spam and one legitimate email have
+     * been seen, and for an email with no well-known tokens.
+     */
+    public synchronized double spamProbability(Email email) {
+        if (spamEmails == 0 || hamEmails == 0) {
+            return 0.5;
+        }
+
+        // Log-odds of spam. There is no prior from the training counts,
+        // since the filter itself decides how much spam gets labelled.
+        double logOdds = scoreText(email.getSubject()) + scoreText(email.scanContent());
+
+        return 1.0 / (1.0 + Math.exp(-logOdds));
+    }
+
+    /**
+     * Get the number of emails the classifier has learned from
+     */
+    public synchronized int getTrainingCount() {
+        return spamEmails + hamEmails;
+    }
+
+    /**
+     * Write what the classifier has learned, for GameSnapshot
+     */
+    synchronized void writeTo(DataOutput out) throws IOException {
+        out.writeInt(spamEmails);
+        out.writeInt(hamEmails);
+        writeCounts(out, spamCounts);
+        writeCounts(out, hamCounts);
+    }
+
+    /**
+     * Replace what the classifier has learned with what writeTo wrote
+     */
+    synchronized void readFrom(ByteBuffer data) {
+        spamEmails = data.getInt();
+        hamEmails = data.getInt();
+        readCounts(data, spamCounts);
+        readCounts(data, hamCounts);
+    }
+
+    private static void writeCounts(DataOutput out, LongIntHashMap counts) throws IOException {
+        out.writeInt(counts.size());
+        for (int slot = 0; slot < counts.slotCount(); slot++) {
+            if (counts.isSlotUsed(slot)) {
+                out.writeLong(counts.keyAt(slot));
+                out.writeInt(counts.valueAt(slot));
+            }
+        }
+    }
+
+    private static void readCounts(ByteBuffer data, LongIntHashMap counts) {
+        counts.clear();
+        int size = data.getInt();
+        for (int i = 0; i < size; i++) {
+            counts.put(data.getLong(), data.getInt());
+        }
+    }
+
+    private void trainText(String text, LongIntHashMap counts) {
+        if (text == null) {
+            return;
+        }
+        long hash = FNV_OFFSET;
+        boolean inToken = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                counts.addTo(hash, 1);
+                hash = FNV_OFFSET;
+                inToken = false;
+            }
+        }
+    }
+
+    private double scoreText(String text) {
+        if (text == null) {
+            return 0;
+        }
+        double logOdds = 0;
+        long hash = FNV_OFFSET;
+        boolean inToken = false;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                inToken = true;
+            } else if (inToken) {
+                logOdds += scoreToken(hash);
+                hash = FNV_OFFSET;
+                inToken = false;
+            }
+        }
+        return logOdds;
+    }
+
+    /**
+     * Get a token's log-odds of spam from how often it appears per spam
+     * email and per legitimate email, or 0 if it is too rare to judge
+     */
+    private double scoreToken(long hash) {
+        int spamCount = spamCounts.get(hash, 0);
+        int hamCount = hamCounts.get(hash, 0);
+        if (spamCount + hamCount < MIN_TOKEN_COUNT) {
+            return 0;
+        }
+        double spamRate = (double) spamCount / spamEmails;
+        double hamRate = (double) hamCount / hamEmails;
+        double probability = spamRate / (spamRate + hamRate);
+        probability = Math.max(MIN_TOKEN_PROBABILITY, Math.min(MAX_TOKEN_PROBABILITY, probability));
+        return Math.log(probability) - Math.log(1 - probability);
+    }
+}
@@ -0,0 +1,49 @@
+package src;
+
+import javax.swing.*;
+
+/**
+ * Shows game events on the main screen.
+ * State changes only mark the screen for its next coalesced refresh;
+ * dialogs are passed to the Event Dispatch Thread.
+ */
+public class SwingGameListener implements GameListener {
+    private final MainScreen mainScreen;
+
+    /**
+     * Constructor for a listener that updates the given screen
+     */
+    public SwingGameListener(MainScreen mainScreen) {
+        this.mainScreen = mainScreen;
+    }
+
+    @Override
+    public void stateChanged() {
+        mainScreen.requestRefresh();
+    }
+
+    @Override
+    public void levelUp(int level, int bonusCoins) {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(mainScreen,
+                "Congratulations! You've reached Level " + level + "!\n" +
+                "You've been awarded " + bonusCoins + " bonus coins.",
+                "Level Up!",
+                JOptionPane.INFORMATION_MESSAGE);
+
+            mainScreen.requestRefresh();
+        });
+    }
+
+    @Override
+    public void gameOver(String message, int finalScore, int finalLevel) {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(mainScreen,
+                message + "\n\n" +
+                "Final Score: " + finalScore + "\n" +
+                "Final Level: " + finalLevel,
+                "Game Over",
+                JOptionPane.INFORMATION_MESSAGE);
+        });
+    }
+}
@@ -0,0 +1,157 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for deadlines.
+ * Time is cut into ticks and each deadline goes into the bucket for its
+ * tick, wrapping around the wheel with a count of remaining rounds.
+ * Scheduling and cancelling are O(1) (each bucket is a doubly linked list),
+ * and advancing only visits the buckets for the ticks that passed, so tens
+ * of thousands of pending deadlines cost nothing until they come due.
+ * Deadlines fire at the first tick boundary at or after them.
+ */
+public class TimingWheel<T> {
+    /**
+     * A scheduled deadline, used to cancel it
+     */
+    public static final class Timeout<T> {
+        private final T item;
+        private final long deadlineNanos;
+        private long rounds;
+        private int bucket = -1; // -1 once expired or cancelled
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T item, long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public long getDeadlineNanos() {
+            return deadlineNanos;
+        }
+    }
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final Timeout<T>[] buckets;
+    private final int mask;
+    private long currentTick; // Next tick to process
+    private int size;
+
+    // Reused list of expired timeouts, handed to the callback outside the lock
+    private final List<Timeout<T>> expired = new ArrayList<>();
+
+    /**
+     * Constructor for a wheel with the given tick length and number of
+     * buckets (rounded up to a power of two), starting at startNanos
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickNanos, int wheelSize, long startNanos) {
+        if (tickNanos <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick length and wheel size must be positive");
+        }
+        int bucketCount = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.buckets = (Timeout<T>[]) new Timeout<?>[bucketCount];
+        this.mask = bucketCount - 1;
+    }
+
+    /**
+     * Schedule a deadline for an item
+     */
+    public synchronized Timeout<T> schedule(T item, long deadlineNanos) {
+        Timeout<T> timeout = new Timeout<>(item, deadlineNanos);
+        long tick = Math.max(currentTick, Math.floorDiv(deadlineNanos - startNanos + tickNanos - 1, tickNanos));
+        timeout.rounds = (tick - currentTick) / buckets.length;
+        timeout.bucket = (int) (tick & mask);
+
+        // Push on the front of the bucket's list
+        Timeout<T> head = buckets[timeout.bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        buckets[timeout.bucket] = timeout;
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancel a deadline. Returns false if it already expired or was cancelled.
+     */
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout == null || timeout.bucket < 0) {
+            return false;
+        }
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Fire every deadline up to now, in tick order.
+     * The callback runs after the wheel's lock is released, so it may
+     * schedule or cancel other deadlines.
+     */
+    public void advance(long nowNanos, Consumer<? super T> onExpired) {
+        List<Timeout<T>> due;
+        synchronized (this) {
+            long targetTick = Math.floorDiv(nowNanos - startNanos, tickNanos);
+            for (; currentTick <= targetTick; currentTick++) {
+                if (size == 0) {
+                    currentTick = targetTick + 1; // Nothing to visit
+                    break;
+                }
+                Timeout<T> timeout = buckets[(int) (currentTick & mask)];
+                while (timeout != null) {
+                    Timeout<T> next = timeout.next;
+                    if (timeout.rounds <= 0) {
+                        unlink(timeout);
+                        expired.add(timeout);
+                    } else {
+                        timeout.rounds--;
+                    }
+                    timeout = next;
+                }
+            }
+            if (expired.isEmpty()) {
+                return;
+            }
+            due = new ArrayList<>(expired);
+            expired.clear();
+        }
+        for (Timeout<T> timeout : due) {
+            onExpired.accept(timeout.item);
+        }
+    }
+
+    /**
+     * Get the number of pending deadlines
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev == null) {
+            buckets[timeout.bucket] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+        size--;
+    }
+}
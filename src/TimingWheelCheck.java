@@ -0,0 +1,219 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Self-check for TimingWheel deadline firing.
+ *
+ * First on one thread: deadlines are scheduled between advances, some in
+ * the past, many more than one turn of the wheel ahead, and some from the
+ * expiry callback itself; a share are cancelled; and the wheel is advanced
+ * by steps from nothing to several turns at once. Every deadline must fire
+ * exactly once unless cancelled, on the first advance that reaches the tick
+ * boundary at or after it (the next tick, if the wheel is already past
+ * that), and each advance must fire in tick order.
+ *
+ * Then with threads scheduling and cancelling while another advances: no
+ * deadline may fire twice, fire early or fire after being cancelled, and
+ * every deadline must end up either fired or cancelled.
+ * Exits with status 1 if any check fails.
+ */
+public class TimingWheelCheck {
+    private static final long TICK_NANOS = GameManager.TICK_NANOS;
+    private static final int WHEEL_SIZE = 64; // Small, so most deadlines wrap around
+    private static final long START_NANOS = 1_000_000_000_000L;
+
+    private static int failures;
+
+    private static synchronized void check(boolean ok, String message) {
+        if (!ok) {
+            failures++;
+            if (failures <= 20) {
+                System.out.println("FAILED: " + message);
+            }
+        }
+    }
+
+    /**
+     * Get the time a deadline fires at: the tick boundary at or after it,
+     * or if the wheel has already passed that, the next tick the wheel
+     * processes. advancedTo is the time of the last advance, or null if
+     * there hasn't been one.
+     */
+    private static long firingTime(long deadlineNanos, Long advancedTo) {
+        long tick = Math.floorDiv(deadlineNanos - START_NANOS + TICK_NANOS - 1, TICK_NANOS);
+        long nextTick = advancedTo == null ? 0 : Math.floorDiv(advancedTo - START_NANOS, TICK_NANOS) + 1;
+        return START_NANOS + Math.max(tick, nextTick) * TICK_NANOS;
+    }
+
+    /**
+     * Schedule, cancel and advance on one thread, checking when and in what
+     * order each deadline fires
+     */
+    private static void checkFiringOrder(int deadlines, long seed) {
+        SplittableRandom rng = new SplittableRandom(seed);
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK_NANOS, WHEEL_SIZE, START_NANOS);
+        long wheelSpan = WHEEL_SIZE * TICK_NANOS;
+
+        long[] firingTimes = new long[deadlines];
+        List<TimingWheel.Timeout<Integer>> timeouts = new ArrayList<>();
+        boolean[] cancelled = new boolean[deadlines];
+        int[] fireCount = new int[deadlines];
+        int[] scheduled = {0};
+        long[] now = {START_NANOS};
+        Long[] advancedTo = {null};
+        long[] lastFiringTime = new long[1];
+
+        // Schedules one deadline somewhere from a turn in the past to 20 turns ahead
+        Runnable scheduleOne = () -> {
+            int id = scheduled[0]++;
+            long deadline = now[0] + rng.nextLong(-wheelSpan, 20 * wheelSpan);
+            firingTimes[id] = firingTime(deadline, advancedTo[0]);
+            timeouts.add(wheel.schedule(id, deadline));
+        };
+
+        int advances = 0;
+        int fired = 0;
+        while (scheduled[0] < deadlines || wheel.size() > 0) {
+            int batch = Math.min(rng.nextInt(50), deadlines - scheduled[0]);
+            for (int i = 0; i < batch; i++) {
+                scheduleOne.run();
+            }
+            for (int i = 0; i < 5 && scheduled[0] > 0; i++) {
+                // Mostly recent deadlines, which are more likely still pending
+                int id = scheduled[0] - 1 - rng.nextInt(Math.min(scheduled[0], 1000));
+                boolean pending = fireCount[id] == 0 && !cancelled[id];
+                boolean cancelledNow = wheel.cancel(timeouts.get(id));
+                check(cancelledNow == pending, "cancel of deadline " + id + " returned " + cancelledNow);
+                cancelled[id] |= cancelledNow;
+            }
+
+            // Usually a tick or two, sometimes nothing, sometimes several turns
+            long previous = now[0];
+            int step = rng.nextInt(10);
+            now[0] += step == 0 ? 0 : step < 8 ? rng.nextLong(2 * TICK_NANOS) : rng.nextLong(5 * wheelSpan);
+            lastFiringTime[0] = Long.MIN_VALUE;
+            int[] firedNow = {0};
+            advancedTo[0] = now[0]; // The wheel has moved on before the first callback
+            wheel.advance(now[0], id -> {
+                fireCount[id]++;
+                firedNow[0]++;
+                check(fireCount[id] == 1, "deadline " + id + " fired twice");
+                check(!cancelled[id], "cancelled deadline " + id + " fired");
+                check(now[0] >= firingTimes[id], "deadline " + id + " fired early");
+                check(previous < firingTimes[id], "deadline " + id + " fired late");
+                check(firingTimes[id] >= lastFiringTime[0], "deadline " + id + " fired out of tick order");
+                lastFiringTime[0] = firingTimes[id];
+                if (scheduled[0] < deadlines && rng.nextInt(8) == 0) {
+                    scheduleOne.run(); // The callback may schedule more
+                }
+            });
+            fired += firedNow[0];
+            advances++;
+        }
+
+        int cancelledCount = 0;
+        for (int id = 0; id < deadlines; id++) {
+            check(fireCount[id] == (cancelled[id] ? 0 : 1), "deadline " + id + " fired " + fireCount[id] + " times");
+            cancelledCount += cancelled[id] ? 1 : 0;
+        }
+        System.out.printf("Firing order: %d deadlines, %d fired and %d cancelled over %d advances%n",
+                          deadlines, fired, cancelledCount, advances);
+    }
+
+    /**
+     * Schedule and cancel from several threads while one thread advances
+     */
+    private static void checkConcurrentUse(int deadlinesPerThread, int threads, long seed) throws InterruptedException {
+        int total = deadlinesPerThread * threads;
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK_NANOS, WHEEL_SIZE, START_NANOS);
+        AtomicIntegerArray fired = new AtomicIntegerArray(total);
+        AtomicIntegerArray cancelled = new AtomicIntegerArray(total);
+        long[] deadlineNanos = new long[total];
+        AtomicInteger firedCount = new AtomicInteger();
+        AtomicInteger cancelledCount = new AtomicInteger();
+        AtomicBoolean scheduling = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        SplittableRandom seeds = new SplittableRandom(seed);
+
+        Thread[] schedulers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int first = t * deadlinesPerThread;
+            SplittableRandom rng = seeds.split();
+            schedulers[t] = new Thread(() -> {
+                awaitStart(start);
+                for (int id = first; id < first + deadlinesPerThread; id++) {
+                    deadlineNanos[id] = START_NANOS + rng.nextLong(50 * WHEEL_SIZE * TICK_NANOS);
+                    TimingWheel.Timeout<Integer> timeout = wheel.schedule(id, deadlineNanos[id]);
+                    if (rng.nextInt(4) == 0 && wheel.cancel(timeout)) {
+                        cancelled.set(id, 1);
+                        cancelledCount.incrementAndGet();
+                    }
+                }
+            }, "scheduler-" + t);
+        }
+
+        Thread advancer = new Thread(() -> {
+            awaitStart(start);
+            long now = START_NANOS;
+            while (scheduling.get() || wheel.size() > 0) {
+                now += TICK_NANOS;
+                long reached = now;
+                wheel.advance(now, id -> {
+                    check(fired.incrementAndGet(id) == 1, "deadline " + id + " fired twice");
+                    check(cancelled.get(id) == 0, "cancelled deadline " + id + " fired");
+                    check(reached >= deadlineNanos[id], "deadline " + id + " fired early");
+                    firedCount.incrementAndGet();
+                });
+            }
+        }, "advancer");
+
+        for (Thread scheduler : schedulers) {
+            scheduler.start();
+        }
+        advancer.start();
+        start.countDown();
+        for (Thread scheduler : schedulers) {
+            scheduler.join();
+        }
+        scheduling.set(false);
+        advancer.join();
+
+        for (int id = 0; id < total; id++) {
+            check(fired.get(id) + cancelled.get(id) == 1, "deadline " + id + " neither fired nor was cancelled");
+        }
+        check(wheel.size() == 0, "wheel still holds " + wheel.size() + " deadlines");
+        System.out.printf("Concurrent use: %d deadlines from %d threads, %d fired and %d cancelled%n",
+                          total, threads, firedCount.get(), cancelledCount.get());
+    }
+
+    /**
+     * Usage: TimingWheelCheck [deadlines] [scheduler threads]
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int deadlines = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        checkFiringOrder(deadlines, 1);
+        checkConcurrentUse(deadlines / threads, threads, 1);
+
+        System.out.println(failures == 0 ? "All checks passed" : failures + " checks failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void awaitStart(CountDownLatch start) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
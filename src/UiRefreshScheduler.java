@@ -0,0 +1,71 @@
+package src;
+
+import javax.swing.Timer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Coalesces UI refresh requests into at most one refresh per frame.
+ * Any thread may request a refresh; that only sets a dirty flag. A Swing
+ * timer checks the flag once per frame on the Event Dispatch Thread and
+ * runs the refresh if it was set, so a burst of game events costs one
+ * refresh and never queues work up on the EDT.
+ */
+public class UiRefreshScheduler {
+    private final Runnable refresh;
+    private final AtomicBoolean dirty;
+    private final Timer timer;
+
+    /**
+     * Constructor for a scheduler that runs refresh on the EDT at most
+     * maxFramesPerSecond times a second. Call start() to begin.
+     */
+    public UiRefreshScheduler(Runnable refresh, int maxFramesPerSecond) {
+        this.refresh = refresh;
+        this.dirty = new AtomicBoolean();
+        this.timer = new Timer(frameMillis(maxFramesPerSecond), e -> runFrame());
+        timer.setCoalesce(true); // A late frame never turns into several
+    }
+
+    /**
+     * Ask for a refresh at the next frame. Safe to call from any thread.
+     */
+    public void requestRefresh() {
+        dirty.set(true);
+    }
+
+    /**
+     * Change the frame rate cap
+     */
+    public void setMaxFramesPerSecond(int maxFramesPerSecond) {
+        timer.setDelay(frameMillis(maxFramesPerSecond));
+    }
+
+    /**
+     * Start checking for refreshes, with one right away
+     */
+    public void start() {
+        dirty.set(true);
+        timer.start();
+    }
+
+    /**
+     * Stop checking for refreshes
+     */
+    public void stop() {
+        timer.stop();
+    }
+
+    private void runFrame() {
+        // Clear the flag first so changes made during the refresh get the next frame
+        if (dirty.getAndSet(false)) {
+            refresh.run();
+        }
+    }
+
+    private static int frameMillis(int maxFramesPerSecond) {
+        if (maxFramesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + maxFramesPerSecond);
+        }
+        return Math.max(1, 1000 / maxFramesPerSecond);
+    }
+}
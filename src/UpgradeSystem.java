@@ -1,16 +1,28 @@
 package src;
 
+import java.util.zip.Deflater;
+
 /**
  * Manages available upgrades, purchase transactions, and applies upgrade effects.
  */
 public class UpgradeSystem {
     private static final int MAX_UPGRADE_LEVEL = 10;
     
+    // Scales every upgrade cost, for tuning the game balance
+    private final double costMultiplier;
+    
     /**
      * Constructor for the upgrade system
      */
     public UpgradeSystem() {
-        // Initialize any necessary data
+        this(1.0);
+    }
+    
+    /**
+     * Constructor for an upgrade system whose costs are scaled by costMultiplier
+     */
+    public UpgradeSystem(double costMultiplier) {
+        this.costMultiplier = costMultiplier;
     }
     
     /**
@@ -18,7 +30,18 @@ public class UpgradeSystem {
      */
     public int getUpgradeCost(UpgradeType type, int currentLevel) {
         // Each level increases the cost by 50%
-        return (int)(type.getBaseCost() * (1 + (currentLevel * 0.5)));
+        return (int)(type.getBaseCost() * (1 + (currentLevel * 0.5)) * costMultiplier);
+    }
+    
+    /**
+     * Get the highest level an upgrade can reach. The Attachment Compressor
+     * stops at the strongest deflate level, 9.
+     */
+    public int getMaxUpgradeLevel(UpgradeType type) {
+        if (type == UpgradeType.ATTACHMENT_COMPRESSOR) {
+            return Deflater.BEST_COMPRESSION;
+        }
+        return MAX_UPGRADE_LEVEL;
     }
     
     /**
@@ -28,7 +51,7 @@ public class UpgradeSystem {
         int currentLevel = player.getUpgradeLevel(type);
         
         // Check if already at max level
-        if (currentLevel >= MAX_UPGRADE_LEVEL) {
+        if (currentLevel >= getMaxUpgradeLevel(type)) {
             return false;
         }
         
@@ -41,20 +64,14 @@ public class UpgradeSystem {
      * Purchase an upgrade for the player
      */
     public boolean purchaseUpgrade(Player player, UpgradeType type) {
-        if (!canPurchaseUpgrade(player, type)) {
+        // Check, pay and upgrade in one atomic step, so points awarded on the
+        // game loop meanwhile are never lost and a purchase is never half done
+        if (!player.tryPurchaseUpgrade(type, getMaxUpgradeLevel(type), level -> getUpgradeCost(type, level))) {
             return false;
         }
         
-        int currentLevel = player.getUpgradeLevel(type);
-        int cost = getUpgradeCost(type, currentLevel);
-        
-        if (player.deductCoins(cost)) {
-            player.increaseUpgradeLevel(type);
-            applyUpgradeEffect(player, type);
-            return true;
-        }
-        
-        return false;
+        applyUpgradeEffect(player, type);
+        return true;
     }
     
     /**
@@ -74,7 +91,7 @@ public class UpgradeSystem {
                 break;
                 
             case SPAM_FILTER:
-                // Applied through getSpamFilterChance() in Player
+                // Applied through getSpamFilterThreshold() in Player
                 break;
                 
             case QUICK_REPLY:
@@ -86,7 +103,7 @@ public class UpgradeSystem {
                 break;
                 
             case ATTACHMENT_COMPRESSOR:
-                // Applied through getAttachmentSpaceReduction() in Player
+                // Applied through getAttachmentCompressionLevel() in Player
                 break;
         }
     }
@@ -103,7 +120,10 @@ public class UpgradeSystem {
                 return "-" + (5 * level) + "% time";
                 
             case SPAM_FILTER:
-                return (5 * level) + "% auto-delete";
+                if (level == 0) {
+                    return "off";
+                }
+                return "filters at " + Math.round(Player.getSpamFilterThreshold(level) * 100) + "% spam";
                 
             case QUICK_REPLY:
                 // Modified to show time reduction
@@ -113,7 +133,7 @@ public class UpgradeSystem {
                 return "+" + (10 * level) + "% speed";
                 
             case ATTACHMENT_COMPRESSOR:
-                return "-" + (5 * level) + "% space";
+                return level == 0 ? "uncompressed" : "deflate level " + Player.getAttachmentCompressionLevel(level);
                 
             default:
                 return "";
@@ -0,0 +1,211 @@
+package src;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Indexed binary heap of inbox emails ordered by how pressing they are:
+ * urgent emails first, then by response deadline, then by arrival time.
+ * The deadline is the one GameManager scheduled for the email, so chain
+ * escalation and pauses, which move it, are reflected once the email is
+ * re-keyed.
+ * Insert, remove, peek and re-keying are O(log n), and the top N can be
+ * read in O(N log N) without sorting the whole inbox.
+ */
+public class UrgencyQueue {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NONE = -1;
+
+    // Heap arrays, kept in step by position
+    private Email[] emails;
+    private boolean[] urgent;
+    private long[] deadlines;
+    private long[] arrivals;
+    private int size;
+
+    // Heap position of each email, by email id
+    private final LongIntHashMap positions;
+
+    /**
+     * Constructor for an empty queue
+     */
+    public UrgencyQueue() {
+        emails = new Email[INITIAL_CAPACITY];
+        urgent = new boolean[INITIAL_CAPACITY];
+        deadlines = new long[INITIAL_CAPACITY];
+        arrivals = new long[INITIAL_CAPACITY];
+        positions = new LongIntHashMap();
+    }
+
+    /**
+     * Add an email to the queue
+     */
+    public synchronized void add(Email email) {
+        if (positions.containsKey(email.getId())) {
+            return;
+        }
+        if (size == emails.length) {
+            int capacity = size * 2;
+            emails = Arrays.copyOf(emails, capacity);
+            urgent = Arrays.copyOf(urgent, capacity);
+            deadlines = Arrays.copyOf(deadlines, capacity);
+            arrivals = Arrays.copyOf(arrivals, capacity);
+        }
+        int position = size++;
+        emails[position] = email;
+        setKey(position, email);
+        positions.put(email.getId(), position);
+        siftUp(position);
+    }
+
+    /**
+     * Remove an email from the queue. Returns false if it was not queued.
+     */
+    public synchronized boolean remove(Email email) {
+        int position = positions.get(email.getId(), NONE);
+        if (position == NONE) {
+            return false;
+        }
+        positions.remove(email.getId());
+
+        int last = --size;
+        if (position != last) {
+            move(last, position);
+            siftDown(position);
+            siftUp(position);
+        }
+        emails[last] = null;
+        return true;
+    }
+
+    /**
+     * Re-read an email's urgency and deadline after it changed, and move it
+     * to its new place in the queue
+     */
+    public synchronized void rekey(Email email) {
+        int position = positions.get(email.getId(), NONE);
+        if (position == NONE) {
+            return;
+        }
+        setKey(position, email);
+        siftDown(position);
+        siftUp(position);
+    }
+
+    /**
+     * Get the most pressing email, or null if the queue is empty
+     */
+    public synchronized Email peek() {
+        return size == 0 ? null : emails[0];
+    }
+
+    /**
+     * Get up to n of the most pressing emails, most pressing first.
+     * Walks the heap best-first from the root, so only about n nodes are visited.
+     */
+    public synchronized List<Email> topN(int n) {
+        List<Email> result = new ArrayList<>(Math.min(n, size));
+        if (n <= 0 || size == 0) {
+            return result;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<>(this::compare);
+        frontier.add(0);
+        while (!frontier.isEmpty() && result.size() < n) {
+            int position = frontier.poll();
+            result.add(emails[position]);
+            int left = 2 * position + 1;
+            if (left < size) {
+                frontier.add(left);
+            }
+            if (left + 1 < size) {
+                frontier.add(left + 1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the number of queued emails
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void setKey(int position, Email email) {
+        TimingWheel.Timeout<Email> deadline = email.deadline;
+        urgent[position] = email.isUrgent();
+        arrivals[position] = email.getReceivedNanos();
+        deadlines[position] = deadline != null ? deadline.getDeadlineNanos() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Compare two heap positions; negative when a is more pressing
+     */
+    private int compare(int a, int b) {
+        if (urgent[a] != urgent[b]) {
+            return urgent[a] ? -1 : 1;
+        }
+        if (deadlines[a] != deadlines[b]) {
+            return Long.compare(deadlines[a], deadlines[b]);
+        }
+        return Long.compare(arrivals[a], arrivals[b]);
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (compare(position, parent) >= 0) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int best = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && compare(left, best) < 0) {
+                best = left;
+            }
+            if (right < size && compare(right, best) < 0) {
+                best = right;
+            }
+            if (best == position) {
+                return;
+            }
+            swap(position, best);
+            position = best;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Email email = emails[a];
+        boolean isUrgent = urgent[a];
+        long deadline = deadlines[a];
+        long arrival = arrivals[a];
+
+        move(b, a);
+
+        emails[b] = email;
+        urgent[b] = isUrgent;
+        deadlines[b] = deadline;
+        arrivals[b] = arrival;
+        positions.put(email.getId(), b);
+    }
+
+    /**
+     * Copy the entry at one position over another and update its index
+     */
+    private void move(int from, int to) {
+        emails[to] = emails[from];
+        urgent[to] = urgent[from];
+        deadlines[to] = deadlines[from];
+        arrivals[to] = arrivals[from];
+        positions.put(emails[to].getId(), to);
+    }
+}